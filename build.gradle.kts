@@ -1,5 +1,19 @@
+import com.dylibso.chicory.build.time.compiler.Config
+import com.dylibso.chicory.build.time.compiler.Generator
+
+buildscript {
+    repositories {
+        mavenCentral()
+    }
+    dependencies {
+        // The build-time compiler generates classes against the runtime's API, so both have to come from the same release
+        classpath("com.dylibso.chicory:build-time-compiler:1.4.0")
+    }
+}
+
 plugins {
     id("org.openrewrite.build.recipe-library") version "latest.release"
+    id("me.champeau.jmh") version "latest.release"
 }
 group = "org.openrewrite"
 description = "Rewrite CSharp"
@@ -10,6 +24,9 @@ val latest = if (project.hasProperty("releasing")) {
     "latest.integration"
 }
 
+// Keep in sync with the build-time compiler on the buildscript classpath
+val chicoryVersion = "1.4.0"
+
 dependencies {
     annotationProcessor("org.projectlombok:lombok:latest.release")
 
@@ -24,8 +41,8 @@ dependencies {
     implementation("org.openrewrite:rewrite-properties")
     implementation("org.openrewrite:rewrite-xml")
     implementation("org.openrewrite:rewrite-remote:latest.integration")
-    implementation("com.dylibso.chicory:runtime:latest.integration")
-    implementation("com.dylibso.chicory:wasi:latest.integration")
+    implementation("com.dylibso.chicory:runtime:${chicoryVersion}")
+    implementation("com.dylibso.chicory:wasi:${chicoryVersion}")
     implementation("org.extism.sdk:extism:latest.integration")
 //    implementation("org.extism:chicory-sdk:latest.integration")
     implementation("io.github.kawamuray.wasmtime:wasmtime-java:latest.integration")
@@ -40,6 +57,8 @@ dependencies {
     testImplementation("org.openrewrite:rewrite-test")
     testRuntimeOnly("org.junit.jupiter:junit-jupiter-engine:latest.release")
     testRuntimeOnly("org.openrewrite:rewrite-java-17")
+
+    jmh("org.openrewrite:rewrite-core")
 }
 
 tasks.compileJava {
@@ -47,6 +66,74 @@ tasks.compileJava {
     options.release = 17
 }
 
+// Compiles wasm.wasm to JVM bytecode ahead of time, so that the Chicory runtime doesn't have to interpret it.
+// Checkouts without a built wasm.wasm skip this, and Chicory then interprets the module, logging a warning.
+val chicoryAotDir = layout.buildDirectory.dir("generated/chicory-aot")
+val compileWasmAot = tasks.register("compileWasmAot") {
+    val wasm = file("src/main/resources/wasm.wasm")
+    inputs.file(wasm).optional()
+    onlyIf { wasm.exists() }
+    outputs.dir(chicoryAotDir)
+    doLast {
+        val dir = chicoryAotDir.get().asFile.toPath()
+        delete(dir)
+        val generator = Generator(
+            Config.builder()
+                .withWasmFile(wasm.toPath())
+                .withName("org.openrewrite.csharp.aot.WasmAot")
+                .withTargetClassFolder(dir.resolve("classes"))
+                .withTargetSourceFolder(dir.resolve("sources"))
+                .withTargetWasmFolder(dir.resolve("resources"))
+                .build()
+        )
+        val interpretedFunctions = generator.generateResources()
+        generator.generateSources()
+        generator.generateMetaWasm(interpretedFunctions)
+    }
+}
+
+// The generated `WasmAot` source loads the module's metadata and creates the compiled machine
+sourceSets.main {
+    java.srcDir(chicoryAotDir.map { it.dir("sources") })
+    resources.srcDir(chicoryAotDir.map { it.dir("resources") })
+    output.dir(mapOf("builtBy" to compileWasmAot), chicoryAotDir.map { it.dir("classes") })
+}
+
+tasks.compileJava {
+    dependsOn(compileWasmAot)
+    classpath += files(chicoryAotDir.map { it.dir("classes") })
+}
+
+tasks.processResources {
+    dependsOn(compileWasmAot)
+}
+
+jmh {
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    resultFormat.set("JSON")
+    // e.g. `./gradlew jmh -Pjmh.includes=DemoRecipeBenchmark` to run a single benchmark
+    if (project.hasProperty("jmh.includes")) {
+        includes.set(listOf(project.property("jmh.includes").toString()))
+    }
+}
+
+// Records the results of the last `./gradlew jmh` run as the baseline later runs are compared against. The JSON
+// names the JDK of every benchmark, but not the machine, without which the numbers can't be compared.
+tasks.register("recordJmhBaseline") {
+    val results = jmh.resultsFile
+    inputs.file(results)
+    doLast {
+        results.get().asFile.copyTo(file("src/jmh/baseline.json"), overwrite = true)
+        file("src/jmh/baseline.properties").writeText(
+            listOf("os.name", "os.version", "os.arch")
+                .joinToString("") { "$it=${System.getProperty(it)}\n" } +
+                    "availableProcessors=${Runtime.getRuntime().availableProcessors()}\n"
+        )
+    }
+}
+
 //tasks.named<Copy>("processResources").configure {
 //    from(file("wasm/bin/Debug/net8.0/wasi-wasm/AppBundle/wasm.wasm")) {
 //        into(".")
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+/**
+ * Generates C# sources of a given size, exercising the syntax every {@link DemoRecipe.Transform} rewrites.
+ */
+final class CSharpSources {
+
+    private CSharpSources() {
+    }
+
+    static String generate(int bytes) {
+        StringBuilder source = new StringBuilder(bytes + 1024);
+        source.append("using System;\nusing System.Linq;\n\n");
+        for (int i = 0; source.length() < bytes; i++) {
+            source.append("class C").append(i).append("\n{\n")
+                    .append("    int f").append(i).append(" = ").append(i).append(";\n")
+                    .append("    bool b").append(i).append(" = true;\n")
+                    .append("    void M(ref int r, out int o)\n    {\n")
+                    .append("        int x;\n")
+                    .append("        Func<int, int> f = y => y + 1;\n")
+                    .append("        Func<int, int> g = delegate (int y) { return y - 1; };\n")
+                    .append("        o = checked(r + 1);\n")
+                    .append("        unchecked { r++; --r; }\n")
+                    .append("        x = 0;\n")
+                    .append("        x += r;\n")
+                    .append("        do { x--; } while (x > 0);\n")
+                    .append("        while (x < 10) { x++; }\n")
+                    .append("        var q = from n in new[] { 3, 1, 2 } orderby n ascending select n;\n")
+                    .append("        var d = from n in new[] { 3, 1, 2 } orderby n descending select n;\n")
+                    .append("        M(ref x, out x);\n")
+                    .append("    }\n}\n\n")
+                    .append("struct S").append(i).append("\n{\n    bool b = false;\n}\n\n");
+        }
+        return source.toString();
+    }
+}
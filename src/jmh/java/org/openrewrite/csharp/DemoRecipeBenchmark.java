@@ -0,0 +1,96 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import org.openjdk.jmh.annotations.*;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Tree;
+import org.openrewrite.text.PlainText;
+import org.openrewrite.text.PlainTextParser;
+
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures {@link DemoRecipe} end to end per transform: prefiltering, checking out an instance,
+ * marshalling, transforming in the guest and reading back the result. Every invocation visits a source
+ * with a path of its own and one of several texts, so that it parses the source rather than reusing the
+ * {@link WasmDocument document} an earlier invocation left open, which only {@link #resident()} measures.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DemoRecipeBenchmark {
+
+    @Param
+    DemoRecipe.Transform transform;
+
+    @Param({"1024", "65536", "1048576", "5242880"})
+    int size;
+
+    private static final int VARIANTS = 16;
+
+    private final AtomicInteger invocations = new AtomicInteger();
+
+    private DemoRecipe recipe;
+    private ExecutionContext ctx;
+    private PlainText[] sources;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        recipe = new DemoRecipe(transform);
+        ctx = new InMemoryExecutionContext();
+        String text = CSharpSources.generate(size);
+        sources = new PlainText[VARIANTS];
+        for (int i = 0; i < VARIANTS; i++) {
+            sources[i] = ((PlainText) PlainTextParser.builder().build().parse(text + "// variant " + i + "\n").findFirst().orElseThrow())
+                    .withSourcePath(Paths.get("src/Generated.cs"));
+        }
+    }
+
+    private PlainText nextSource() {
+        int n = invocations.getAndIncrement();
+        return sources[n % VARIANTS].withSourcePath(Paths.get("src/Generated" + n + ".cs"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        recipe.onComplete(ctx);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Tree singleThreaded() {
+        return recipe.getVisitor().visit(nextSource(), ctx);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Tree multiThreaded() {
+        return recipe.getVisitor().visit(nextSource(), ctx);
+    }
+
+    /**
+     * Visits the same source over and over, which the instance keeps open as a document after the first visit.
+     */
+    @Benchmark
+    @Threads(1)
+    public Tree resident() {
+        return recipe.getVisitor().visit(sources[0], ctx);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures marshalling text into and out of linear memory through the {@link Wasm.Heap}, without calling the guest.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HeapBenchmark {
+
+    @Param({"1024", "65536", "1048576", "5242880"})
+    int size;
+
+    private Wasm wasm;
+    private Wasm.Heap heap;
+    private String source;
+    private int length;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        wasm = new Wasm(WasmRuntime.forName(null), DemoRecipe.WASM_MODULE);
+        wasm.init();
+        heap = wasm.getHeap();
+        source = CSharpSources.generate(size);
+        length = source.length();
+        encode();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        wasm.close();
+    }
+
+    @Benchmark
+    public int encode() {
+        ByteBuffer payload = heap.prepare(length);
+        heap.encode(source, 0, payload);
+        heap.commit();
+        return payload.position();
+    }
+
+    @Benchmark
+    public String decode() {
+        ByteBuffer payload = heap.payload(heap.getBase());
+        return heap.decode(payload, payload.remaining(), false);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import io.github.kawamuray.wasmtime.Engine;
+import io.github.kawamuray.wasmtime.Module;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what each {@link WasmEngineConfig} setting does to compiling the module, instantiating it, and
+ * transforming a source on the compiled code. Compiling bypasses both the in-memory registry and the on-disk
+ * {@link WasmModuleCache}, so that every invocation compiles from scratch.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class WasmEngineConfigBenchmark {
+
+    @Param({"", "optLevel=none", "optLevel=speed_and_size", "memoryReservation=static", "memoryReservation=dynamic"})
+    String engineConfig;
+
+    private final String source = CSharpSources.generate(16 * 1024);
+    private final byte[] module = WasmModules.readModule(DemoRecipe.WASM_MODULE);
+
+    private WasmRuntime runtime;
+    private Wasm wasm;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        runtime = WasmRuntime.forName(WasmtimeRuntime.NAME, engineConfig);
+        wasm = new Wasm(runtime, DemoRecipe.WASM_MODULE, false);
+        wasm.init();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        wasm.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public Module compile() {
+        Engine engine = new Engine(WasmEngineConfig.parse(engineConfig).toWasmtimeConfig());
+        try {
+            return Module.fromBinary(engine, module);
+        } finally {
+            engine.close();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public long instantiate() {
+        try (WasmInstance instance = runtime.instantiate(DemoRecipe.WASM_MODULE)) {
+            return instance.memorySize();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public String transform() {
+        return wasm.transform(source, DemoRecipe.Transform.IntTypeToLongType.ordinal());
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes to create a ready-to-use instance, from scratch or from a {@link WasmSnapshot},
+ * including the first transform, which is where the .NET runtime and Roslyn finish initializing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(jvmArgsAppend = "-D" + WasmSnapshot.SNAPSHOT_PROPERTY + "=true")
+public class WasmInitBenchmark {
+
+    @Param({"wasmtime", "chicory"})
+    String runtime;
+
+    @Param({"false", "true"})
+    boolean fromSnapshot;
+
+    private final String source = CSharpSources.generate(1024);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // compile the module and take the snapshot up front, as both are cached for the lifetime of the JVM
+        WasmModules.get(DemoRecipe.WASM_MODULE);
+        WasmSnapshot.get(WasmRuntime.forName(runtime), DemoRecipe.WASM_MODULE);
+    }
+
+    @Benchmark
+    public String initAndFirstTransform() {
+        Wasm wasm = new Wasm(WasmRuntime.forName(runtime), DemoRecipe.WASM_MODULE, fromSnapshot);
+        try {
+            wasm.init();
+            return wasm.transform(source, DemoRecipe.Transform.IntTypeToLongType.ordinal());
+        } finally {
+            wasm.close();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the steady-state throughput of the supported wasm runtimes on a warm instance, cycling through
+ * sources of different shapes. {@link WasmInitBenchmark} covers creating the instance and its first transform.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class WasmRuntimeBenchmark {
+    private static final int SOURCES = 50;
+
+    @Param({"wasmtime", "chicory"})
+    String runtime;
+
+    private final String[] sources = new String[SOURCES];
+    private Wasm wasm;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        for (int i = 0; i < SOURCES; i++) {
+            StringBuilder source = new StringBuilder("class C").append(i).append("\n{\n");
+            for (int j = 0; j <= i; j++) {
+                source.append("    int f").append(j).append(" = ").append(j).append(";\n");
+            }
+            sources[i] = source.append("}\n").toString();
+        }
+        wasm = new Wasm(WasmRuntime.forName(runtime), DemoRecipe.WASM_MODULE, false);
+        wasm.init();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        wasm.close();
+    }
+
+    @Benchmark
+    public String transform() {
+        String source = sources[next];
+        next = (next + 1) % SOURCES;
+        return wasm.transform(source, DemoRecipe.Transform.IntTypeToLongType.ordinal());
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import lombok.EqualsAndHashCode;
+import lombok.Value;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Option;
+import org.openrewrite.Preconditions;
+import org.openrewrite.Recipe;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.Validated;
+import org.openrewrite.csharp.table.WasmCallBudgets;
+import org.openrewrite.csharp.table.WasmCallMetrics;
+import org.openrewrite.internal.lang.Nullable;
+
+import java.util.List;
+
+/**
+ * Applies several of the {@link DemoRecipe} transforms in order, parsing every source only once,
+ * rather than composing multiple {@link DemoRecipe} instances which each parse the source again.
+ */
+@EqualsAndHashCode(callSuper = false)
+@Value
+public class ChainedDemoRecipe extends Recipe {
+
+    transient WasmCallBudgets callBudgets = new WasmCallBudgets(this);
+    transient WasmCallMetrics callMetrics = new WasmCallMetrics(this);
+
+    @Option(displayName = "Transforms",
+            description = "Transforms to apply, in order.",
+            example = "IntTypeToLongType, TrueToFalse",
+            valid = {"LambdaToAnonMethod", "AnonMethodToLambda", "DoToWhile", "WhileToDo",
+                    "CheckedStmtToUncheckedStmt", "UncheckedStmtToCheckedStmt",
+                    "CheckedExprToUncheckedExpr", "UncheckedExprToCheckedExpr",
+                    "PostfixToPrefix", "PrefixToPostfix", "TrueToFalse", "FalseToTrue",
+                    "AddAssignToAssign", "RefParamToOutParam",
+                    "OutParamToRefParam", "RefArgToOutArg", "OutArgToRefArg",
+                    "OrderByAscToOrderByDesc", "OrderByDescToOrderByAsc",
+                    "DefaultInitAllVars",
+                    "ClassDeclToStructDecl", "StructDeclToClassDecl",
+                    "IntTypeToLongType"})
+    List<DemoRecipe.Transform> transforms;
+
+    @Option(displayName = WasmRecipeOptions.RUNTIME_DISPLAY_NAME,
+            description = WasmRecipeOptions.RUNTIME_DESCRIPTION,
+            required = false,
+            valid = {WasmtimeRuntime.NAME, ChicoryRuntime.NAME},
+            example = WasmRecipeOptions.RUNTIME_EXAMPLE)
+    @Nullable
+    String runtime;
+
+    public ChainedDemoRecipe(List<DemoRecipe.Transform> transforms) {
+        this(transforms, null);
+    }
+
+    @JsonCreator
+    public ChainedDemoRecipe(List<DemoRecipe.Transform> transforms, @Nullable String runtime) {
+        this.transforms = transforms;
+        this.runtime = runtime;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Chained C# demo recipe";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Demo recipe applying several simple C# transformations in order, parsing every source file only once.";
+    }
+
+    @Override
+    public Validated<Object> validate() {
+        return WasmRecipeOptions.validate(super.validate(), runtime);
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getVisitor() {
+        return Preconditions.check(DemoRecipe.csharpSources(), new WasmTransformVisitor(WasmRuntime.forName(runtime), transforms, callBudgets, callMetrics));
+    }
+
+    @Override
+    public void onComplete(ExecutionContext ctx) {
+        WasmScope.complete(ctx, callMetrics);
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import com.dylibso.chicory.runtime.ExportFunction;
+import com.dylibso.chicory.runtime.GlobalInstance;
+import com.dylibso.chicory.runtime.HostFunction;
+import com.dylibso.chicory.runtime.ImportValues;
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.runtime.Machine;
+import com.dylibso.chicory.runtime.Memory;
+import com.dylibso.chicory.wasi.WasiOptions;
+import com.dylibso.chicory.wasi.WasiPreview1;
+import com.dylibso.chicory.wasm.Parser;
+import com.dylibso.chicory.wasm.WasmModule;
+import com.dylibso.chicory.wasm.types.FunctionType;
+import com.dylibso.chicory.wasm.types.ValType;
+import lombok.Value;
+import org.openrewrite.internal.lang.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Runs the module on Chicory, a wasm runtime written in pure Java, for deployments where native
+ * libraries are not allowed. Parsed modules are shared across instances.
+ * <p>
+ * Modules which the {@code compileWasmAot} build task compiled to JVM bytecode run on their generated
+ * machine, which HotSpot JIT compiles like any other Java code. Without one, Chicory interprets the module,
+ * which is many times slower, so that is logged as a warning unless it was asked for with {@link #AOT_PROPERTY}.
+ */
+final class ChicoryRuntime implements WasmRuntime {
+    static final String NAME = "chicory";
+    static final ChicoryRuntime INSTANCE = new ChicoryRuntime();
+
+    /**
+     * Set to {@code false} to interpret modules even if they were compiled ahead of time.
+     */
+    static final String AOT_PROPERTY = "rewrite.csharp.wasm.chicory.aot";
+
+    private static final String AOT_PACKAGE = "org.openrewrite.csharp.aot.";
+
+    private static final System.Logger logger = System.getLogger(ChicoryRuntime.class.getName());
+
+    private final Map<String, LoadedModule> modules = new ConcurrentHashMap<>();
+
+    private ChicoryRuntime() {
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public WasmInstance instantiate(String modulePath) {
+        return new ChicoryInstance(load(modulePath));
+    }
+
+    LoadedModule load(String modulePath) {
+        return modules.computeIfAbsent(modulePath, path -> {
+            if (!Boolean.parseBoolean(System.getProperty(AOT_PROPERTY, "true"))) {
+                return new LoadedModule(Parser.parse(WasmModules.readModule(path)), null);
+            }
+            String className = aotClassName(path);
+            try {
+                Class<?> aot = Class.forName(className, true, ChicoryRuntime.class.getClassLoader());
+                MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                MethodHandle load = lookup.findStatic(aot, "load", MethodType.methodType(WasmModule.class));
+                MethodHandle create = lookup.findStatic(aot, "create", MethodType.methodType(Machine.class, Instance.class));
+                return new LoadedModule((WasmModule) load.invoke(), instance -> createMachine(create, instance));
+            } catch (ClassNotFoundException e) {
+                logger.log(System.Logger.Level.WARNING, "{0} was not compiled ahead of time, so Chicory interprets it, " +
+                                                        "which is many times slower. Build it with the compileWasmAot task.", path);
+                return new LoadedModule(Parser.parse(WasmModules.readModule(path)), null);
+            } catch (Throwable e) {
+                throw new IllegalStateException("Unable to load ahead-of-time compiled module " + className, e);
+            }
+        });
+    }
+
+    /**
+     * @return The class the {@code compileWasmAot} build task generates for a module, named after the module's
+     * file name, such as {@code org.openrewrite.csharp.aot.WasmAot} for {@code wasm.wasm}.
+     */
+    static String aotClassName(String modulePath) {
+        String fileName = modulePath.substring(modulePath.lastIndexOf('/') + 1);
+        String name = fileName.endsWith(".wasm") ? fileName.substring(0, fileName.length() - ".wasm".length()) : fileName;
+        return AOT_PACKAGE + name.substring(0, 1).toUpperCase(Locale.ROOT) + name.substring(1) + "Aot";
+    }
+
+    private static Machine createMachine(MethodHandle create, Instance instance) {
+        try {
+            return (Machine) create.invokeExact(instance);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Value
+    static class LoadedModule {
+        WasmModule module;
+
+        /**
+         * {@code null} when the module is interpreted.
+         */
+        @Nullable
+        Function<Instance, Machine> machineFactory;
+
+        boolean isAot() {
+            return machineFactory != null;
+        }
+    }
+
+    static final class ChicoryInstance implements WasmInstance {
+        private final WasiPreview1 wasi;
+        private final Instance instance;
+
+        private volatile WasmHost host = WasmHost.NONE;
+
+        ChicoryInstance(LoadedModule module) {
+            wasi = WasiPreview1.builder().withOptions(WasiOptions.builder().build()).build();
+            ImportValues imports = ImportValues.builder()
+                    .addFunction(wasi.toHostFunctions())
+                    .addFunction(hostRead())
+                    .build();
+            Instance.Builder builder = Instance.builder(module.getModule()).withImportValues(imports);
+            if (module.getMachineFactory() != null) {
+                builder.withMachineFactory(module.getMachineFactory());
+            }
+            instance = builder.build();
+        }
+
+        private HostFunction hostRead() {
+            List<ValType> params = Collections.nCopies(5, ValType.I32);
+            return new HostFunction(WasmHost.MODULE, WasmHost.READ_FUNCTION, FunctionType.of(params, List.of(ValType.I32)),
+                    (inst, args) -> new long[]{WasmHost.read(host, this, (int) args[0], (int) args[1],
+                            (int) args[2], (int) args[3], (int) args[4])});
+        }
+
+        Machine getMachine() {
+            return instance.getMachine();
+        }
+
+        @Override
+        public void setHost(WasmHost host) {
+            this.host = host;
+        }
+
+        @Override
+        public int call(String function, int... args) {
+            long[] params = new long[args.length];
+            for (int i = 0; i < args.length; i++) {
+                params[i] = args[i];
+            }
+            ExportFunction export = instance.export(function);
+            long[] result = export.apply(params);
+            return result == null || result.length == 0 ? 0 : (int) result[0];
+        }
+
+        @Override
+        public @Nullable ByteBuffer directMemory() {
+            // Chicory doesn't expose its linear memory as a buffer
+            return null;
+        }
+
+        @Override
+        public long getGlobal(WasmModules.ExportedGlobal global) {
+            // Chicory keeps the raw bits of every global in a long
+            long value = instance.global(global.getIndex()).getValue();
+            switch (global.getType()) {
+                case WasmModules.ExportedGlobal.I32:
+                case WasmModules.ExportedGlobal.F32:
+                    return (int) value;
+                default:
+                    return value;
+            }
+        }
+
+        @Override
+        public void setGlobal(WasmModules.ExportedGlobal global, long bits) {
+            GlobalInstance instanceGlobal = instance.global(global.getIndex());
+            switch (global.getType()) {
+                case WasmModules.ExportedGlobal.I32:
+                case WasmModules.ExportedGlobal.F32:
+                    instanceGlobal.setValue((int) bits);
+                    break;
+                default:
+                    instanceGlobal.setValue(bits);
+            }
+        }
+
+        @Override
+        public int readInt(int addr) {
+            return memory().readInt(addr);
+        }
+
+        @Override
+        public void writeInt(int addr, int value) {
+            memory().writeI32(addr, value);
+        }
+
+        @Override
+        public void read(int addr, ByteBuffer dst) {
+            dst.put(memory().readBytes(addr, dst.remaining()));
+        }
+
+        @Override
+        public void write(int addr, ByteBuffer src) {
+            byte[] bytes = new byte[src.remaining()];
+            src.get(bytes);
+            memory().write(addr, bytes);
+        }
+
+        @Override
+        public long memorySize() {
+            return (long) memory().pages() * Memory.PAGE_SIZE;
+        }
+
+        @Override
+        public void ensureMemorySize(long bytes) {
+            long missing = bytes - memorySize();
+            if (missing > 0) {
+                memory().grow((int) ((missing + Memory.PAGE_SIZE - 1) / Memory.PAGE_SIZE));
+            }
+        }
+
+        private Memory memory() {
+            return instance.memory();
+        }
+
+        @Override
+        public void close() {
+            wasi.close();
+        }
+    }
+}
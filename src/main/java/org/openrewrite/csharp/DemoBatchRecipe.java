@@ -0,0 +1,248 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import lombok.EqualsAndHashCode;
+import lombok.Value;
+import org.openrewrite.*;
+import org.openrewrite.csharp.table.WasmCallBudgets;
+import org.openrewrite.csharp.table.WasmCallMetrics;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.text.PlainText;
+import org.openrewrite.text.PlainTextVisitor;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Same as {@link DemoRecipe}, but collects all C# sources while scanning and transforms them in batches,
+ * which amortizes the cost of crossing the host/guest boundary over many (typically small) files.
+ */
+@EqualsAndHashCode(callSuper = false)
+@Value
+public class DemoBatchRecipe extends ScanningRecipe<DemoBatchRecipe.Accumulator> {
+
+    private static final int DEFAULT_BATCH_SIZE = 64;
+
+    transient WasmCallBudgets callBudgets = new WasmCallBudgets(this);
+    transient WasmCallMetrics callMetrics = new WasmCallMetrics(this);
+
+    @Option(displayName = "Transform",
+            description = "Transform to apply.",
+            example = "LambdaToAnonMethod",
+            valid = {"LambdaToAnonMethod", "AnonMethodToLambda", "DoToWhile", "WhileToDo",
+                    "CheckedStmtToUncheckedStmt", "UncheckedStmtToCheckedStmt",
+                    "CheckedExprToUncheckedExpr", "UncheckedExprToCheckedExpr",
+                    "PostfixToPrefix", "PrefixToPostfix", "TrueToFalse", "FalseToTrue",
+                    "AddAssignToAssign", "RefParamToOutParam",
+                    "OutParamToRefParam", "RefArgToOutArg", "OutArgToRefArg",
+                    "OrderByAscToOrderByDesc", "OrderByDescToOrderByAsc",
+                    "DefaultInitAllVars",
+                    "ClassDeclToStructDecl", "StructDeclToClassDecl",
+                    "IntTypeToLongType"})
+    DemoRecipe.Transform transform;
+
+    @Option(displayName = "Batch size",
+            description = "The maximum number of source files to transform in a single call into the wasm module. Defaults to 64.",
+            required = false,
+            example = "64")
+    @Nullable
+    Integer batchSize;
+
+    @Option(displayName = WasmRecipeOptions.RUNTIME_DISPLAY_NAME,
+            description = WasmRecipeOptions.RUNTIME_DESCRIPTION,
+            required = false,
+            valid = {WasmtimeRuntime.NAME, ChicoryRuntime.NAME},
+            example = WasmRecipeOptions.RUNTIME_EXAMPLE)
+    @Nullable
+    String runtime;
+
+    public DemoBatchRecipe(DemoRecipe.Transform transform, @Nullable Integer batchSize) {
+        this(transform, batchSize, null);
+    }
+
+    @JsonCreator
+    public DemoBatchRecipe(DemoRecipe.Transform transform, @Nullable Integer batchSize, @Nullable String runtime) {
+        this.transform = transform;
+        this.batchSize = batchSize;
+        this.runtime = runtime;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "C# demo recipe (batched)";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Demo recipe showcasing some simple C# transformations, transforming source files in batches.";
+    }
+
+    @Override
+    public Validated<Object> validate() {
+        return WasmRecipeOptions.validate(super.validate(), runtime);
+    }
+
+    public static class Accumulator {
+        final Map<Path, String> pending = new LinkedHashMap<>();
+        final Map<Path, Result> results = new HashMap<>();
+    }
+
+    @Value
+    static class Result {
+        String before;
+
+        @Nullable
+        String after;
+    }
+
+    @Value
+    private static class BatchResult {
+        /**
+         * {@code null} if the batch exceeded its budget.
+         */
+        @Nullable
+        List<@Nullable String> transformed;
+
+        long budgetMillis;
+        long usedMillis;
+    }
+
+    @Override
+    public Accumulator getInitialValue(ExecutionContext ctx) {
+        return new Accumulator();
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getScanner(Accumulator acc) {
+        return Preconditions.check(DemoRecipe.csharpSources(), new PlainTextVisitor<>() {
+            final TransformPrefilter prefilter = TransformPrefilter.of(singletonList(transform));
+
+            @Override
+            public PlainText visitText(PlainText text, ExecutionContext ctx) {
+                if (prefilter.mayChange(text.getText())) {
+                    synchronized (acc) {
+                        acc.pending.put(text.getSourcePath(), text.getText());
+                    }
+                }
+                return text;
+            }
+        });
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getVisitor(Accumulator acc) {
+        return Preconditions.check(DemoRecipe.csharpSources(), new PlainTextVisitor<>() {
+            final TransformPrefilter prefilter = TransformPrefilter.of(singletonList(transform));
+
+            @Override
+            public PlainText visitText(PlainText text, ExecutionContext ctx) {
+                if (!prefilter.mayChange(text.getText())) {
+                    return text;
+                }
+                Result result = flush(acc, ctx).get(text.getSourcePath());
+                if (result != null && result.getBefore().equals(text.getText())) {
+                    return result.getAfter() == null ? text : text.withText(result.getAfter());
+                }
+                // the source was changed by another recipe since it was scanned, or its batch exceeded its budget
+                return WasmTransformVisitor.transform(pool(ctx), WasmScope.current(ctx).metrics(callMetrics), text, new int[]{transform.ordinal()}, callBudgets, ctx);
+            }
+        });
+    }
+
+    @Override
+    public void onComplete(ExecutionContext ctx) {
+        WasmScope.complete(ctx, callMetrics);
+    }
+
+    private Map<Path, Result> flush(Accumulator acc, ExecutionContext ctx) {
+        synchronized (acc) {
+            if (!acc.pending.isEmpty()) {
+                List<Map.Entry<Path, String>> pending = new ArrayList<>(acc.pending.size());
+                WasmResultCache cache = WasmResultCache.getDefault();
+                Map<Path, String> keys = new HashMap<>();
+                if (cache != null) {
+                    String moduleSha256 = WasmModules.sha256Of(DemoRecipe.WASM_MODULE);
+                    int[] transforms = {transform.ordinal()};
+                    for (Map.Entry<Path, String> source : acc.pending.entrySet()) {
+                        String key = WasmResultCache.key(moduleSha256, transforms, source.getValue());
+                        WasmResultCache.Hit hit = cache.load(key);
+                        if (hit != null) {
+                            acc.results.put(source.getKey(), new Result(source.getValue(), hit.getAfter()));
+                        } else {
+                            keys.put(source.getKey(), key);
+                            pending.add(source);
+                        }
+                    }
+                } else {
+                    pending.addAll(acc.pending.entrySet());
+                }
+                int size = batchSize == null ? DEFAULT_BATCH_SIZE : Math.max(1, batchSize);
+                List<List<Map.Entry<Path, String>>> batches = new ArrayList<>();
+                for (int i = 0; i < pending.size(); i += size) {
+                    batches.add(pending.subList(i, Math.min(i + size, pending.size())));
+                }
+                WasmInstancePool pool = pool(ctx);
+                WasmMetrics metrics = WasmScope.current(ctx).metrics(callMetrics);
+                List<CompletableFuture<BatchResult>> futures = batches.stream()
+                        .map(batch -> pool.supplyAsync(() -> transformBatch(pool, metrics, batch)))
+                        .collect(toList());
+                List<BatchResult> transformed = futures.stream().map(CompletableFuture::join).collect(toList());
+                for (int i = 0; i < batches.size(); i++) {
+                    List<Map.Entry<Path, String>> batch = batches.get(i);
+                    BatchResult batchResult = transformed.get(i);
+                    List<@Nullable String> results = batchResult.getTransformed();
+                    WasmTransformVisitor.insertRow(callBudgets, ctx, new WasmCallBudgets.Row(batch.get(0).getKey().toString(), batch.size(),
+                            batchResult.getBudgetMillis(), batchResult.getUsedMillis(), results == null));
+                    if (results != null) {
+                        for (int j = 0; j < batch.size(); j++) {
+                            acc.results.put(batch.get(j).getKey(), new Result(batch.get(j).getValue(), results.get(j)));
+                            if (cache != null) {
+                                cache.store(keys.get(batch.get(j).getKey()), results.get(j));
+                            }
+                        }
+                    }
+                }
+                acc.pending.clear();
+            }
+            return acc.results;
+        }
+    }
+
+    private WasmInstancePool pool(ExecutionContext ctx) {
+        return WasmScope.current(ctx).pool(WasmRuntime.forName(runtime), DemoRecipe.WASM_MODULE);
+    }
+
+    private BatchResult transformBatch(WasmInstancePool pool, WasmMetrics metrics, List<Map.Entry<Path, String>> batch) {
+        List<String> texts = batch.stream().map(Map.Entry::getValue).collect(toList());
+        try {
+            return pool.withInstance(metrics, null, wasm -> {
+                long callNanos = wasm.getCallNanos();
+                List<@Nullable String> transformed = wasm.transformBatch(texts, transform.ordinal());
+                return new BatchResult(transformed, wasm.getCallBudgetMillis(),
+                        TimeUnit.NANOSECONDS.toMillis(wasm.getCallNanos() - callNanos));
+            });
+        } catch (WasmBudgetExceededException e) {
+            return new BatchResult(null, e.getBudgetMillis(), e.getUsedMillis());
+        }
+    }
+}
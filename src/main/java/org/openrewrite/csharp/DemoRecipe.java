@@ -15,24 +15,31 @@
  */
 package org.openrewrite.csharp;
 
-import io.github.kawamuray.wasmtime.*;
+import com.fasterxml.jackson.annotation.JsonCreator;
 import lombok.EqualsAndHashCode;
 import lombok.Value;
 import org.openrewrite.*;
+import org.openrewrite.csharp.table.WasmCallBudgets;
+import org.openrewrite.csharp.table.WasmCallMetrics;
 import org.openrewrite.internal.lang.Nullable;
 import org.openrewrite.marker.SearchResult;
 import org.openrewrite.text.PlainText;
 import org.openrewrite.text.PlainTextVisitor;
 
-import java.lang.ref.Cleaner;
-import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.Collections.singletonList;
 
 @EqualsAndHashCode(callSuper = false)
 @Value
 public class DemoRecipe extends Recipe {
 
-    private static final Cleaner cleaner = Cleaner.create();
-    transient Wasm wasm = new Wasm("wasm.wasm");
+    static final String WASM_MODULE = "wasm.wasm";
+
+    transient WasmCallBudgets callBudgets = new WasmCallBudgets(this);
+    transient WasmCallMetrics callMetrics = new WasmCallMetrics(this);
 
     @Option(displayName = "Transform",
             description = "Transform to apply.",
@@ -49,35 +56,58 @@ public class DemoRecipe extends Recipe {
                     "IntTypeToLongType"})
     Transform transform;
 
+    @Option(displayName = WasmRecipeOptions.RUNTIME_DISPLAY_NAME,
+            description = WasmRecipeOptions.RUNTIME_DESCRIPTION,
+            required = false,
+            valid = {WasmtimeRuntime.NAME, ChicoryRuntime.NAME},
+            example = WasmRecipeOptions.RUNTIME_EXAMPLE)
+    @Nullable
+    String runtime;
+
     public enum Transform {
-        LambdaToAnonMethod,
-        AnonMethodToLambda,
-        DoToWhile,
-        WhileToDo,
-        CheckedStmtToUncheckedStmt,
-        UncheckedStmtToCheckedStmt,
-        CheckedExprToUncheckedExpr,
-        UncheckedExprToCheckedExpr,
-        PostfixToPrefix,
-        PrefixToPostfix,
-        TrueToFalse,
-        FalseToTrue,
-        AddAssignToAssign,
-        RefParamToOutParam,
-        OutParamToRefParam,
-        RefArgToOutArg,
-        OutArgToRefArg,
-        OrderByAscToOrderByDesc,
-        OrderByDescToOrderByAsc,
+        LambdaToAnonMethod("=>"),
+        AnonMethodToLambda("delegate"),
+        DoToWhile("do"),
+        WhileToDo("while"),
+        CheckedStmtToUncheckedStmt("checked"),
+        UncheckedStmtToCheckedStmt("unchecked"),
+        CheckedExprToUncheckedExpr("checked"),
+        UncheckedExprToCheckedExpr("unchecked"),
+        PostfixToPrefix("++", "--"),
+        PrefixToPostfix("++", "--"),
+        TrueToFalse("true"),
+        FalseToTrue("false"),
+        AddAssignToAssign("+="),
+        RefParamToOutParam("ref"),
+        OutParamToRefParam("out"),
+        RefArgToOutArg("ref"),
+        OutArgToRefArg("out"),
+        OrderByAscToOrderByDesc("ascending"),
+        OrderByDescToOrderByAsc("descending"),
         DefaultInitAllVars,
-        ClassDeclToStructDecl,
-        StructDeclToClassDecl,
-        IntTypeToLongType,
+        ClassDeclToStructDecl("class"),
+        StructDeclToClassDecl("struct"),
+        IntTypeToLongType("int");
+
+        /**
+         * Tokens of which at least one must occur in a source for the transform to possibly change it.
+         * Transforms without keywords may change any source.
+         */
+        final List<String> keywords;
+
+        Transform(String... keywords) {
+            this.keywords = Arrays.asList(keywords);
+        }
     }
 
     public DemoRecipe(Transform transform) {
+        this(transform, null);
+    }
+
+    @JsonCreator
+    public DemoRecipe(Transform transform, @Nullable String runtime) {
         this.transform = transform;
-        cleaner.register(this, wasm::close);
+        this.runtime = runtime;
     }
 
     @Override
@@ -90,46 +120,36 @@ public class DemoRecipe extends Recipe {
         return "Demo recipe showcasing some simple C# transformations.";
     }
 
+    @Override
+    public Validated<Object> validate() {
+        return WasmRecipeOptions.validate(super.validate(), runtime);
+    }
+
     @Override
     public TreeVisitor<?, ExecutionContext> getVisitor() {
-        return Preconditions.check(new PlainTextVisitor<>() {
-            @Override
-            public @Nullable Tree visit(@Nullable Tree tree, ExecutionContext ctx) {
-                return tree instanceof PlainText && ((PlainText) tree).getSourcePath().getFileName().toString().endsWith(".cs") ? SearchResult.found(tree) : tree;
-            }
-        }, new PlainTextVisitor<>() {
+        return Preconditions.check(csharpSources(), new WasmTransformVisitor(WasmRuntime.forName(runtime), singletonList(transform), callBudgets, callMetrics));
+    }
 
-            final char bomIndicator = '\uFEFF';
-            final byte[] bomIndicatorBytes = "\uFEFF".getBytes(StandardCharsets.UTF_8);
+    /**
+     * Transforms a source without blocking the caller, so that many sources can be in flight at once, e.g.
+     * from one virtual thread each. The work is queued on the threads of the run's wasm instance pool, which
+     * has as many threads as instances.
+     */
+    public CompletableFuture<PlainText> transformAsync(PlainText text, ExecutionContext ctx) {
+        return new WasmTransformVisitor(WasmRuntime.forName(runtime), singletonList(transform), callBudgets, callMetrics).visitTextAsync(text, ctx);
+    }
 
+    @Override
+    public void onComplete(ExecutionContext ctx) {
+        WasmScope.complete(ctx, callMetrics);
+    }
+
+    static TreeVisitor<?, ExecutionContext> csharpSources() {
+        return new PlainTextVisitor<>() {
             @Override
-            public PlainText visitText(PlainText text, ExecutionContext ctx) {
-                wasm.init();
-                try (Func transform = wasm.func("transform")) {
-                    wasm.getHeap().writeNullTerminatedString(wasm.getHeap().base, text.getText());
-                    Val[] result = transform.call(wasm.getStore(), Val.fromI32(wasm.getHeap().getBase()), Val.fromI32(DemoRecipe.this.transform.ordinal()));
-                    byte[] bytes = wasm.getHeap().readBytesWithLength(result[0].i32());
-                    boolean beforeHasBom = text.getText().charAt(0) == bomIndicator;
-                    if (beforeHasBom) {
-                        boolean afterHasBom = true;
-                        for (int i = 0; i < bomIndicatorBytes.length; i++) {
-                            if (bomIndicatorBytes[i] != bytes[i]) {
-                                afterHasBom = false;
-                                break;
-                            }
-                        }
-                        if (!afterHasBom) {
-                            byte[] tmp = new byte[bytes.length + bomIndicatorBytes.length];
-                            System.arraycopy(bomIndicatorBytes, 0, tmp, 0, bomIndicatorBytes.length);
-                            System.arraycopy(bytes, 0, tmp, bomIndicatorBytes.length, bytes.length);
-                            bytes = tmp;
-                        }
-                    }
-                    String afterText = new String(bytes, StandardCharsets.UTF_8);
-                    return text.withText(afterText);
-                }
+            public @Nullable Tree visit(@Nullable Tree tree, ExecutionContext ctx) {
+                return tree instanceof PlainText && ((PlainText) tree).getSourcePath().getFileName().toString().endsWith(".cs") ? SearchResult.found(tree) : tree;
             }
-        });
+        };
     }
-
 }
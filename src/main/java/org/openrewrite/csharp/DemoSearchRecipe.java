@@ -0,0 +1,148 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import lombok.EqualsAndHashCode;
+import lombok.Value;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Option;
+import org.openrewrite.Preconditions;
+import org.openrewrite.Recipe;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.Validated;
+import org.openrewrite.csharp.table.TransformMatches;
+import org.openrewrite.csharp.table.WasmCallBudgets;
+import org.openrewrite.csharp.table.WasmCallMetrics;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.marker.Markup;
+import org.openrewrite.text.PlainText;
+import org.openrewrite.text.PlainTextVisitor;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Marks where the {@link DemoRecipe} transforms would change C# sources, without rewriting them. Only the
+ * positions of the matches cross back from the guest, which makes this cheap enough to estimate the impact
+ * of the transforms across many repositories before running them.
+ */
+@EqualsAndHashCode(callSuper = false)
+@Value
+public class DemoSearchRecipe extends Recipe {
+
+    transient TransformMatches transformMatches = new TransformMatches(this);
+    transient WasmCallBudgets callBudgets = new WasmCallBudgets(this);
+    transient WasmCallMetrics callMetrics = new WasmCallMetrics(this);
+
+    @Option(displayName = "Transforms",
+            description = "Transforms to search for.",
+            example = "IntTypeToLongType, TrueToFalse",
+            valid = {"LambdaToAnonMethod", "AnonMethodToLambda", "DoToWhile", "WhileToDo",
+                    "CheckedStmtToUncheckedStmt", "UncheckedStmtToCheckedStmt",
+                    "CheckedExprToUncheckedExpr", "UncheckedExprToCheckedExpr",
+                    "PostfixToPrefix", "PrefixToPostfix", "TrueToFalse", "FalseToTrue",
+                    "AddAssignToAssign", "RefParamToOutParam",
+                    "OutParamToRefParam", "RefArgToOutArg", "OutArgToRefArg",
+                    "OrderByAscToOrderByDesc", "OrderByDescToOrderByAsc",
+                    "DefaultInitAllVars",
+                    "ClassDeclToStructDecl", "StructDeclToClassDecl",
+                    "IntTypeToLongType"})
+    List<DemoRecipe.Transform> transforms;
+
+    @Option(displayName = WasmRecipeOptions.RUNTIME_DISPLAY_NAME,
+            description = WasmRecipeOptions.RUNTIME_DESCRIPTION,
+            required = false,
+            valid = {WasmtimeRuntime.NAME, ChicoryRuntime.NAME},
+            example = WasmRecipeOptions.RUNTIME_EXAMPLE)
+    @Nullable
+    String runtime;
+
+    public DemoSearchRecipe(List<DemoRecipe.Transform> transforms) {
+        this(transforms, null);
+    }
+
+    @JsonCreator
+    public DemoSearchRecipe(List<DemoRecipe.Transform> transforms, @Nullable String runtime) {
+        this.transforms = transforms;
+        this.runtime = runtime;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Find C# demo transform candidates";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Marks where the C# demo transformations would change source files, without changing them.";
+    }
+
+    @Override
+    public Validated<Object> validate() {
+        return WasmRecipeOptions.validate(super.validate(), runtime);
+    }
+
+    @Override
+    public TreeVisitor<?, ExecutionContext> getVisitor() {
+        WasmRuntime wasmRuntime = WasmRuntime.forName(runtime);
+        int[] ordinals = transforms.stream().mapToInt(Enum::ordinal).toArray();
+        return Preconditions.check(DemoRecipe.csharpSources(), new PlainTextVisitor<>() {
+            final TransformPrefilter prefilter = TransformPrefilter.of(transforms);
+
+            @Override
+            public PlainText visitText(PlainText text, ExecutionContext ctx) {
+                if (!prefilter.mayChange(text.getText())) {
+                    return text;
+                }
+                String sourcePath = text.getSourcePath().toString();
+                int[] matches;
+                try {
+                    WasmScope scope = WasmScope.current(ctx);
+                    matches = scope.pool(wasmRuntime, DemoRecipe.WASM_MODULE).withInstance(scope.metrics(callMetrics), null, wasm -> {
+                        long callNanos = wasm.getCallNanos();
+                        int[] found = wasm.find(text.getText(), ordinals);
+                        WasmTransformVisitor.insertRow(callBudgets, ctx, new WasmCallBudgets.Row(sourcePath, 1, wasm.getCallBudgetMillis(),
+                                TimeUnit.NANOSECONDS.toMillis(wasm.getCallNanos() - callNanos), false));
+                        return found;
+                    });
+                } catch (WasmBudgetExceededException e) {
+                    WasmTransformVisitor.insertRow(callBudgets, ctx, new WasmCallBudgets.Row(sourcePath, 1, e.getBudgetMillis(), e.getUsedMillis(), true));
+                    return Markup.warn(text, e);
+                }
+                int[] counts = new int[DemoRecipe.Transform.values().length];
+                for (int i = 2; i < matches.length; i += 3) {
+                    counts[matches[i]]++;
+                }
+                synchronized (ctx) {
+                    for (DemoRecipe.Transform transform : transforms) {
+                        if (counts[transform.ordinal()] > 0) {
+                            transformMatches.insertRow(ctx, new TransformMatches.Row(sourcePath, transform.name(), counts[transform.ordinal()]));
+                            // only report transforms listed more than once a single time
+                            counts[transform.ordinal()] = 0;
+                        }
+                    }
+                }
+                return WasmSearchResult.mark(text, matches);
+            }
+        });
+    }
+
+    @Override
+    public void onComplete(ExecutionContext ctx) {
+        WasmScope.complete(ctx, callMetrics);
+    }
+}
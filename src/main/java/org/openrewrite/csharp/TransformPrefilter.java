@@ -0,0 +1,58 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import org.openrewrite.csharp.internal.KeywordMatcher;
+import org.openrewrite.internal.lang.Nullable;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A cheap lexical check on the Java side that rules out sources which none of a list of transforms can
+ * possibly change, so that they never have to be copied into the wasm module and parsed there.
+ */
+final class TransformPrefilter {
+
+    @Nullable
+    private final KeywordMatcher matcher;
+
+    private TransformPrefilter(@Nullable KeywordMatcher matcher) {
+        this.matcher = matcher;
+    }
+
+    static TransformPrefilter of(List<DemoRecipe.Transform> transforms) {
+        Set<String> keywords = new LinkedHashSet<>();
+        for (DemoRecipe.Transform transform : transforms) {
+            if (transform.keywords.isEmpty()) {
+                // this transform may change any source
+                return new TransformPrefilter(null);
+            }
+            keywords.addAll(transform.keywords);
+        }
+        return new TransformPrefilter(KeywordMatcher.of(keywords));
+    }
+
+    /**
+     * @return {@code false} if none of the transforms can change the source, {@code true} if they may.
+     */
+    boolean mayChange(CharSequence text) {
+        // a transform can only change a source containing one of its keywords, so if there are none
+        // for any transform, the source passes through the whole chain unchanged
+        return matcher == null || matcher.containsAny(text);
+    }
+}
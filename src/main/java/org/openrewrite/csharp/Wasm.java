@@ -15,152 +15,656 @@
  */
 package org.openrewrite.csharp;
 
-import io.github.kawamuray.wasmtime.*;
-import io.github.kawamuray.wasmtime.Module;
-import io.github.kawamuray.wasmtime.wasi.WasiCtx;
-import io.github.kawamuray.wasmtime.wasi.WasiCtxBuilder;
-import lombok.AccessLevel;
-import lombok.RequiredArgsConstructor;
-import lombok.Value;
-import lombok.experimental.PackagePrivate;
+import org.openrewrite.csharp.internal.Utf8;
 import org.openrewrite.internal.lang.Nullable;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.nio.CharBuffer;
+import java.nio.charset.*;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-
-import static java.util.Objects.requireNonNull;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 final class Wasm {
 
+    /**
+     * Large enough for the vast majority of source files, so that the heap buffer only
+     * needs to grow for exceptionally large ones.
+     */
+    private static final int INITIAL_HEAP_CAPACITY = 64 * 1024;
+
+    /**
+     * Returned by the guest in place of a result, when the transforms didn't change the source.
+     */
+    private static final int UNCHANGED = 0;
+
+    /**
+     * Returned by the guest's document exports in place of a result, when the handle isn't open.
+     */
+    private static final int UNKNOWN_DOCUMENT = -1;
+
+    /**
+     * The budget of every call into the guest in milliseconds, {@code 0} disabling it. Defaults to one minute,
+     * far more than any reasonable source file takes, so that only pathological inputs are cut off.
+     */
+    static final String CALL_BUDGET_PROPERTY = "rewrite.csharp.wasm.callBudgetMillis";
+
+    private static final long DEFAULT_CALL_BUDGET_MILLIS = 60_000;
+
+    /**
+     * The number of parsed sources every instance keeps resident as {@link WasmDocument documents}. Disabled by
+     * default, in which case every transform parses its source from scratch, as documents only pay off for sources
+     * which several recipes of a run transform on the same instance.
+     */
+    static final String MAX_DOCUMENTS_PROPERTY = "rewrite.csharp.wasm.maxDocuments";
+
+    /**
+     * The size of linear memory in megabytes above which an instance only keeps the most recently used document,
+     * so that the .NET runtime can reuse the memory of the others rather than growing further.
+     */
+    static final String DOCUMENT_MEMORY_MB_PROPERTY = "rewrite.csharp.wasm.documentMemoryMb";
+
+    private final WasmRuntime runtime;
     private final String modulePath;
+    private final boolean fromSnapshot;
+    private final long callBudgetMillis = Long.getLong(CALL_BUDGET_PROPERTY, DEFAULT_CALL_BUDGET_MILLIS);
+    private final int maxDocuments = Integer.getInteger(MAX_DOCUMENTS_PROPERTY, 0);
+    private final long documentMemoryBytes = Long.getLong(DOCUMENT_MEMORY_MB_PROPERTY, 512) * 1024 * 1024;
+
+    /**
+     * The open documents by source path, in access order so that the least recently used one is evicted first.
+     */
+    private final Map<Path, WasmDocument> documents = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The bytes the document exports marshalled since the current {@link #transform(Path, String, int...)} began.
+     */
+    private long documentBytesIn;
+    private long documentBytesOut;
+
+    private WasmMetrics metrics = WasmMetrics.global();
+    private WasmHost host = WasmHost.NONE;
+    private long lastCallNanos;
+    private long callNanos;
+    private int calls;
 
     @Nullable
-    private WasiCtx wasi;
+    private WasmInstance instance;
 
-    private Store<?> store;
-    private Linker linker;
-    private Engine engine;
-    private Module module;
-    private Memory memory;
     private Heap heap;
 
     public Wasm(String modulePath) {
+        this(WasmRuntime.forName(null), modulePath);
+    }
+
+    public Wasm(WasmRuntime runtime, String modulePath) {
+        this(runtime, modulePath, true);
+    }
+
+    /**
+     * @param fromSnapshot Whether to start from the image of a {@link WasmSnapshot warmed-up instance}, if
+     *                     snapshots are enabled, rather than initializing the guest from scratch.
+     */
+    Wasm(WasmRuntime runtime, String modulePath, boolean fromSnapshot) {
+        this.runtime = runtime;
         this.modulePath = modulePath;
+        this.fromSnapshot = fromSnapshot;
+    }
+
+    void setMetrics(WasmMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    void setHost(WasmHost host) {
+        this.host = host;
+        if (instance != null) {
+            instance.setHost(host);
+        }
     }
 
     void init() {
-        if (wasi == null) {
-            wasi = new WasiCtxBuilder().build();
-            store = Store.withoutData(wasi);
-            linker = new Linker(store.engine());
-            engine = store.engine();
-            module = loadModule(engine);
-            WasiCtx.addToLinker(linker);
-            linker.module(store, "", module);
-            memory = linker.get(store, "", "memory").get().memory();
-            heap = Heap.create(store, memory, linker, 1_000_000);
+        if (instance == null) {
+            long start = System.nanoTime();
+            WasmSnapshot snapshot = fromSnapshot ? WasmSnapshot.get(runtime, modulePath, metrics) : null;
+            instance = runtime.instantiate(modulePath, metrics);
+            if (snapshot != null) {
+                snapshot.restore(instance);
+                heap = Heap.restore(instance, snapshot.getHeapBase(), snapshot.getHeapCapacity());
+            } else {
+                heap = Heap.create(instance, INITIAL_HEAP_CAPACITY);
+            }
+            instance.setCallBudget(callBudgetMillis);
+            instance.setHost(host);
+            metrics.instantiated(runtime.getName(), modulePath, System.nanoTime() - start, snapshot != null);
         }
     }
 
-    Store getStore() {
-        return store;
+    long getCallBudgetMillis() {
+        return callBudgetMillis;
+    }
+
+    /**
+     * @return The number of calls into the guest since the instance was initialized.
+     */
+    int getCalls() {
+        return calls;
+    }
+
+    /**
+     * @return The current size of the guest's linear memory in bytes, which the .NET runtime grows
+     * as needed but never shrinks.
+     */
+    long getMemorySize() {
+        return instance == null ? 0 : instance.memorySize();
+    }
+
+    /**
+     * @return The time spent in calls into the guest since the instance was initialized, whether they completed or not,
+     * so that the difference between two readings covers all calls an operation took.
+     */
+    long getCallNanos() {
+        return callNanos;
+    }
+
+    WasmInstance getInstance() {
+        return instance;
     }
 
     Heap getHeap() {
         return heap;
     }
 
-    Func func(String name) {
-        return linker.get(store, "", name).get().func();
+    /**
+     * Calls the guest's {@code transform} export, which parses the source once, applies all transforms in order,
+     * and writes the transformed source back into the heap buffer, growing the buffer if the result doesn't fit.
+     * A byte order mark is never sent to the guest, but restored on the result instead.
+     *
+     * @param transforms The ordinals of the transforms to apply, in order.
+     * @return The transformed source or {@code null} if the transforms didn't change the source,
+     * in which case nothing is read back from the guest.
+     */
+    @Nullable
+    String transform(String text, int... transforms) {
+        boolean bom = Utf8.startsWithBom(text);
+        int start = bom ? 1 : 0;
+        int length = transformsLength(transforms) + Utf8.encodedLength(text, start);
+        ByteBuffer payload = heap.prepare(length);
+        putTransforms(payload, transforms);
+        heap.encode(text, start, payload);
+        heap.commit();
+        int addr = call("transform", heap.getBase());
+        if (addr == UNCHANGED) {
+            recordCall(transforms, 1, lastCallNanos, length, 0);
+            return null;
+        }
+        ByteBuffer out = heap.payload(addr);
+        recordCall(transforms, 1, lastCallNanos, length, out.remaining());
+        return heap.decode(out, out.remaining(), bom);
+    }
+
+    /**
+     * Calls the guest's {@code find} export, which reports where the transforms would change the source without
+     * transforming it, so that only the positions of the matches are read back from the guest.
+     *
+     * @param transforms The ordinals of the transforms to search for.
+     * @return The start, end and transform ordinal of every match, flattened into consecutive triples, with
+     * positions as indices into {@code text}.
+     */
+    int[] find(String text, int... transforms) {
+        boolean bom = Utf8.startsWithBom(text);
+        int start = bom ? 1 : 0;
+        int length = transformsLength(transforms) + Utf8.encodedLength(text, start);
+        ByteBuffer payload = heap.prepare(length);
+        putTransforms(payload, transforms);
+        heap.encode(text, start, payload);
+        heap.commit();
+        ByteBuffer out = heap.payload(call("find", heap.getBase()));
+        recordCall(transforms, 1, lastCallNanos, length, out.remaining());
+        int[] matches = new int[3 * out.getInt()];
+        for (int i = 0; i < matches.length; i += 3) {
+            // the guest never sees the byte order mark
+            matches[i] = out.getInt() + start;
+            matches[i + 1] = out.getInt() + start;
+            matches[i + 2] = out.getInt();
+        }
+        return matches;
+    }
+
+    /**
+     * Calls the guest's {@code transform_source} export, which only receives the path of the source and requests
+     * its text from the {@link #setHost(WasmHost) host} itself.
+     *
+     * @param bom Whether to prefix the result with a byte order mark, as the host serves sources without it.
+     * @return The transformed source or {@code null} if the transforms didn't change the source, or the host
+     * doesn't have it.
+     */
+    @Nullable
+    String transformSource(Path sourcePath, boolean bom, int... transforms) {
+        String path = sourcePath.toString();
+        int length = transformsLength(transforms) + Utf8.encodedLength(path, 0);
+        ByteBuffer payload = heap.prepare(length);
+        putTransforms(payload, transforms);
+        heap.encode(path, 0, payload);
+        heap.commit();
+        int addr = call("transform_source", heap.getBase());
+        if (addr == UNCHANGED) {
+            recordCall(transforms, 1, lastCallNanos, length, 0);
+            return null;
+        }
+        ByteBuffer out = heap.payload(addr);
+        recordCall(transforms, 1, lastCallNanos, length, out.remaining());
+        return heap.decode(out, out.remaining(), bom);
+    }
+
+    /**
+     * Calls the guest's {@code transform_batch} export, which transforms all sources in a single call.
+     *
+     * @param transforms The ordinals of the transforms to apply to every source, in order.
+     * @return The transformed sources in the order of {@code texts}, with {@code null} for every source
+     * the transforms didn't change.
+     */
+    List<@Nullable String> transformBatch(List<String> texts, int... transforms) {
+        boolean[] boms = new boolean[texts.size()];
+        int[] lengths = new int[texts.size()];
+        long length = transformsLength(transforms) + Integer.BYTES;
+        for (int i = 0; i < texts.size(); i++) {
+            boms[i] = Utf8.startsWithBom(texts.get(i));
+            lengths[i] = Utf8.encodedLength(texts.get(i), boms[i] ? 1 : 0);
+            length += Integer.BYTES + lengths[i];
+        }
+        if (length > Integer.MAX_VALUE - Heap.HEADER_SIZE) {
+            throw new IllegalArgumentException("Batch of " + texts.size() + " sources is too large for wasm linear memory");
+        }
+
+        ByteBuffer payload = heap.prepare((int) length);
+        putTransforms(payload, transforms);
+        payload.putInt(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            payload.putInt(lengths[i]);
+            heap.encode(texts.get(i), boms[i] ? 1 : 0, payload);
+        }
+
+        heap.commit();
+        ByteBuffer out = heap.payload(call("transform_batch", heap.getBase()));
+        recordCall(transforms, texts.size(), lastCallNanos, length, out.remaining());
+        int count = out.getInt();
+        List<@Nullable String> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int status = out.getInt();
+            int len = out.getInt();
+            results.add(status == UNCHANGED ? null : heap.decode(out, len, boms[i]));
+        }
+        return results;
+    }
+
+    /**
+     * Transforms a source through its {@link WasmDocument document}, so that a source which was already parsed by
+     * this instance, and hasn't changed since, isn't parsed again. Falls back to {@link #transform(String, int...)}
+     * if documents are disabled.
+     *
+     * @return The transformed source or {@code null} if the transforms didn't change the source.
+     */
+    @Nullable
+    String transform(Path sourcePath, String text, int... transforms) {
+        if (maxDocuments <= 0) {
+            return transform(text, transforms);
+        }
+        long start = System.nanoTime();
+        documentBytesIn = 0;
+        documentBytesOut = 0;
+        WasmDocument document = document(sourcePath, text);
+        String after = document.apply(transforms) ? document.render() : null;
+        long nanos = System.nanoTime() - start;
+        recordCall(transforms, 1, nanos, documentBytesIn, documentBytesOut);
+        return after == null || after.equals(text) ? null : after;
+    }
+
+    /**
+     * @return The open document of the source, {@link WasmDocument#edit(String) edited} to {@code text} if necessary,
+     * or else a newly opened one
+     * which replaces it. Opening a document evicts the least recently used ones beyond {@value #MAX_DOCUMENTS_PROPERTY}
+     * or while linear memory is larger than {@value #DOCUMENT_MEMORY_MB_PROPERTY} megabytes.
+     */
+    WasmDocument document(Path sourcePath, String text) {
+        synchronized (documents) {
+            WasmDocument document = documents.get(sourcePath);
+            if (document != null && (document.hasText(text) || document.edit(text))) {
+                return document;
+            }
+            if (document != null) {
+                documents.remove(sourcePath);
+                document.close();
+            }
+            document = new WasmDocument(this, openDocument(text), text);
+            documents.put(sourcePath, document);
+            Iterator<WasmDocument> eldest = documents.values().iterator();
+            while (documents.size() > 1 && (documents.size() > maxDocuments || getMemorySize() > documentMemoryBytes)) {
+                WasmDocument evicted = eldest.next();
+                eldest.remove();
+                evicted.close();
+            }
+            return document;
+        }
+    }
+
+    /**
+     * @return Whether this instance keeps a document of the source open, without counting as a use of it.
+     */
+    boolean hasDocument(Path sourcePath) {
+        synchronized (documents) {
+            return documents.containsKey(sourcePath);
+        }
+    }
+
+    /**
+     * Calls the guest's {@code document_open} export, which parses the source and keeps its tree resident.
+     *
+     * @return The handle of the document in the guest.
+     */
+    int openDocument(String text) {
+        boolean bom = Utf8.startsWithBom(text);
+        int start = bom ? 1 : 0;
+        int length = Utf8.encodedLength(text, start);
+        documentBytesIn += length;
+        ByteBuffer payload = heap.prepare(length);
+        heap.encode(text, start, payload);
+        heap.commit();
+        return call("document_open", heap.getBase());
+    }
+
+    /**
+     * Calls the guest's {@code document_apply} export, which applies all transforms in order to the document's tree.
+     *
+     * @return Whether the transforms replaced any part of the tree.
+     */
+    boolean applyToDocument(int handle, int... transforms) {
+        documentBytesIn += transformsLength(transforms);
+        ByteBuffer payload = heap.prepare(transformsLength(transforms));
+        putTransforms(payload, transforms);
+        heap.commit();
+        int status = call("document_apply", handle, heap.getBase());
+        if (status == UNKNOWN_DOCUMENT) {
+            throw new IllegalStateException("No open wasm document with handle " + handle);
+        }
+        return status != UNCHANGED;
     }
 
-    private Module loadModule(Engine engine) {
+    /**
+     * Calls the guest's {@code document_edit} export, which replaces a span of the document's text and
+     * reparses the document incrementally.
+     *
+     * @param start       The start of the replaced span in UTF-16 code units, not counting a byte order mark.
+     * @param length      The length of the replaced span in UTF-16 code units.
+     * @param replacement The text to replace the span with.
+     */
+    void editDocument(int handle, int start, int length, String replacement) {
+        int replacementLength = Utf8.encodedLength(replacement, 0);
+        documentBytesIn += 4 * Integer.BYTES + replacementLength;
+        ByteBuffer payload = heap.prepare(4 * Integer.BYTES + replacementLength);
+        payload.putInt(1);
+        payload.putInt(start);
+        payload.putInt(length);
+        payload.putInt(replacementLength);
+        heap.encode(replacement, 0, payload);
+        heap.commit();
+        if (call("document_edit", handle, heap.getBase()) == UNKNOWN_DOCUMENT) {
+            throw new IllegalStateException("No open wasm document with handle " + handle);
+        }
+    }
+
+    /**
+     * Calls the guest's {@code document_render} export, which writes the text of the document's current tree
+     * into the heap buffer.
+     *
+     * @param bom Whether to prefix the text with a byte order mark.
+     */
+    String renderDocument(int handle, boolean bom) {
+        int addr = call("document_render", handle, heap.getBase());
+        if (addr == 0) {
+            throw new IllegalStateException("No open wasm document with handle " + handle);
+        }
+        ByteBuffer out = heap.payload(addr);
+        documentBytesOut += out.remaining();
+        return heap.decode(out, out.remaining(), bom);
+    }
+
+    void closeDocument(int handle) {
+        call("document_close", handle);
+    }
+
+    /**
+     * @throws WasmBudgetExceededException If the call was interrupted for exceeding its budget.
+     */
+    private int call(String function, int... args) {
+        calls++;
+        long start = System.nanoTime();
         try {
-            Path devTimePath = Paths.get("src/main/resources/" + modulePath);
-            if (Files.exists(devTimePath)) {
-                return Module.fromFile(engine, devTimePath.toString());
-            } else {
-                try (InputStream in = requireNonNull(DemoRecipe.class.getClassLoader().getResourceAsStream(modulePath))) {
-                    // read `in` into `byte[]`
-                    ByteArrayOutputStream out = new ByteArrayOutputStream();
-                    in.transferTo(out);
-                    return Module.fromBinary(engine, out.toByteArray());
-                }
+            return instance.call(function, args);
+        } catch (RuntimeException e) {
+            if (instance.isBudgetExceeded(e)) {
+                long used = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                throw new WasmBudgetExceededException(function, callBudgetMillis, used, e);
             }
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
+            throw e;
+        } finally {
+            lastCallNanos = System.nanoTime() - start;
+            callNanos += lastCallNanos;
+        }
+    }
+
+    private void recordCall(int[] transforms, int sources, long nanos, long bytesIn, long bytesOut) {
+        DemoRecipe.Transform[] all = DemoRecipe.Transform.values();
+        List<DemoRecipe.Transform> applied = new ArrayList<>(transforms.length);
+        for (int transform : transforms) {
+            applied.add(all[transform]);
+        }
+        metrics.called(applied, sources, nanos, bytesIn, bytesOut, instance.memorySize());
+    }
+
+    private static int transformsLength(int[] transforms) {
+        return (transforms.length + 1) * Integer.BYTES;
+    }
+
+    private static void putTransforms(ByteBuffer payload, int[] transforms) {
+        payload.putInt(transforms.length);
+        for (int transform : transforms) {
+            payload.putInt(transform);
         }
     }
 
     public void close() {
-        if (wasi != null) {
-            heap.close();
-            memory.close();
-            linker.close();
-            engine.close();
-            module.close();
-            store.close();
-            wasi.close();
-            wasi = null;
+        if (instance != null) {
+            synchronized (documents) {
+                // the documents die with the instance
+                documents.clear();
+            }
+            try {
+                heap.close();
+            } finally {
+                instance.close();
+                instance = null;
+            }
         }
     }
 
-    @Value
-    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    /**
+     * A buffer in the guest's linear memory used to exchange data with the guest. The buffer is
+     * prefixed with an 8-byte header holding its capacity and the length of the payload, both as
+     * little-endian 32-bit integers:
+     * <pre>
+     *     [capacity][length][payload...]
+     * </pre>
+     * The host grows the buffer geometrically when its input doesn't fit. The guest does the same
+     * for its output, in which case it frees the old buffer and returns the address of the new one,
+     * which the host then adopts. Either way the buffer is reused across calls.
+     * <p>
+     * Payloads are encoded and decoded in place when the runtime exposes its linear memory directly.
+     * Otherwise they go through a host-side staging buffer, which {@link #commit()} copies into linear memory.
+     */
     static class Heap {
-        Store<?> store;
-        Memory memory;
-        Linker linker;
+        static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+        private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+        private final WasmInstance instance;
 
-        @PackagePrivate
-        int base;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
 
-        int size;
+        private int base;
+        private int capacity;
+
+        @Nullable
+        private ByteBuffer staging;
+
+        private Heap(WasmInstance instance) {
+            this.instance = instance;
+        }
 
-        static Heap create(Store<?> store, Memory memory, Linker linker, int size) {
-            try (Func malloc = linker.get(store, "", "malloc").get().func()) {
-                Val[] result = malloc.call(store, Val.fromI32(size));
-                return new Heap(store, memory, linker, result[0].i32(), size);
+        static Heap create(WasmInstance instance, int capacity) {
+            Heap heap = new Heap(instance);
+            heap.allocate(capacity);
+            return heap;
+        }
+
+        /**
+         * Adopts a buffer which already exists in linear memory, such as the one in a restored {@link WasmSnapshot}.
+         */
+        static Heap restore(WasmInstance instance, int base, int capacity) {
+            Heap heap = new Heap(instance);
+            heap.base = base;
+            heap.capacity = capacity;
+            return heap;
+        }
+
+        int getBase() {
+            return base;
+        }
+
+        int getCapacity() {
+            return capacity;
+        }
+
+        void ensureCapacity(int required) {
+            if (required > capacity) {
+                int grown = capacity > (Integer.MAX_VALUE - HEADER_SIZE) / 2 ? required : capacity * 2;
+                free();
+                allocate(Math.max(required, grown));
             }
         }
 
-        int writeNullTerminatedString(int addr, String text) {
-//            memory.grow(store, text.length());
-            ByteBuffer buffer = memory.buffer(store);
-            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
-            buffer.position(addr);
-            buffer.put(bytes);
-            buffer.put((byte) 0);
-            return buffer.position();
+        /**
+         * @return A little-endian view of a payload with the given length, to be filled by the caller
+         * and then {@link #commit() committed}.
+         */
+        ByteBuffer prepare(int length) {
+            ensureCapacity(length);
+            instance.writeInt(base + Integer.BYTES, length);
+            ByteBuffer memory = instance.directMemory();
+            if (memory != null) {
+                return memory.slice(base + HEADER_SIZE, length).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return staging(length);
+        }
+
+        /**
+         * Copies a prepared payload into linear memory, if it was staged on the host.
+         */
+        void commit() {
+            if (staging != null && staging.position() > 0) {
+                instance.write(base + HEADER_SIZE, staging.flip());
+                staging.clear();
+            }
+        }
+
+        /**
+         * @return A little-endian view of the payload the guest returned.
+         */
+        ByteBuffer payload(int addr) {
+            adopt(addr);
+            int length = instance.readInt(base + Integer.BYTES);
+            ByteBuffer memory = instance.directMemory();
+            if (memory != null) {
+                return memory.slice(base + HEADER_SIZE, length).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            ByteBuffer payload = staging(length);
+            instance.read(base + HEADER_SIZE, payload);
+            return payload.flip();
         }
 
-        String readString(int addr) {
-            byte[] bytes = readBytesWithLength(addr);
+        /**
+         * Encodes {@code text.subSequence(start, text.length())} as UTF-8 at the position of {@code target},
+         * which must have room for at least {@link Utf8#encodedLength(CharSequence, int)} bytes.
+         */
+        void encode(CharSequence text, int start, ByteBuffer target) {
+            encoder.reset();
+            CoderResult result = encoder.encode(CharBuffer.wrap(text, start, text.length()), target, true);
+            if (!result.isUnderflow() || !(result = encoder.flush(target)).isUnderflow()) {
+                throw new IllegalStateException("Unable to encode text into wasm linear memory: " + result);
+            }
+        }
+
+        /**
+         * Decodes {@code length} bytes of UTF-8 from the position of {@code source}, advancing it past them.
+         * The bytes are decoded by {@link String#String(byte[], int, int, java.nio.charset.Charset)}, which
+         * stores ASCII sources as compact Latin-1 strings, straight from the backing array of a staged payload,
+         * or from a single copy of a payload in linear memory.
+         *
+         * @param bom Whether to prefix the result with a byte order mark, unless the bytes already start with one.
+         */
+        String decode(ByteBuffer source, int length, boolean bom) {
+            int position = source.position();
+            source.position(position + length);
+            boolean prefix = bom && !(length >= 3 && (source.get(position) & 0xFF) == 0xEF &&
+                                      (source.get(position + 1) & 0xFF) == 0xBB && (source.get(position + 2) & 0xFF) == 0xBF);
+            if (!prefix && source.hasArray()) {
+                return new String(source.array(), source.arrayOffset() + position, length, StandardCharsets.UTF_8);
+            }
+            int offset = prefix ? UTF8_BOM.length : 0;
+            byte[] bytes = new byte[offset + length];
+            System.arraycopy(UTF8_BOM, 0, bytes, 0, offset);
+            source.get(position, bytes, offset, length);
             return new String(bytes, StandardCharsets.UTF_8);
         }
 
-        byte[] readBytesWithLength(int addr) {
-            ByteBuffer buffer = memory.buffer(store);
-            buffer.order(ByteOrder.LITTLE_ENDIAN);
-            int len = buffer.getInt(addr);
-            byte[] bytes = new byte[len];
-            buffer.position(addr + 4);
-            buffer.get(bytes, 0, bytes.length);
-            return bytes;
+        /**
+         * @return The staging buffer, limited to {@code length} bytes, growing it geometrically if necessary.
+         */
+        private ByteBuffer staging(int length) {
+            if (staging == null || staging.capacity() < length) {
+                int grown = staging == null ? 0 : Math.min(Integer.MAX_VALUE - HEADER_SIZE, 2 * staging.capacity());
+                staging = ByteBuffer.allocate(Math.max(length, grown)).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            staging.clear().limit(length);
+            return staging;
         }
 
-        public void close() {
-            try (Func free = linker.get(store, "", "free").get().func()) {
-                free.call(store, Val.fromI32(base));
+        private void adopt(int addr) {
+            if (addr != base) {
+                // the guest outgrew the buffer and has already freed the old one
+                base = addr;
+                capacity = instance.readInt(addr);
+            }
+        }
+
+        private void allocate(int capacity) {
+            int addr = instance.malloc(HEADER_SIZE + capacity);
+            if (addr == 0) {
+                throw new IllegalStateException("Unable to allocate " + capacity + " bytes in wasm linear memory");
             }
+            this.base = addr;
+            this.capacity = capacity;
+            instance.writeInt(addr, capacity);
+        }
+
+        private void free() {
+            instance.free(base);
+        }
+
+        public void close() {
+            free();
         }
     }
 }
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+/**
+ * Thrown when a call into the wasm module is interrupted for running longer than its budget.
+ * The instance the call ran on must not be reused, as the guest may have been interrupted in any state.
+ */
+class WasmBudgetExceededException extends RuntimeException {
+    private final long budgetMillis;
+    private final long usedMillis;
+
+    WasmBudgetExceededException(String function, long budgetMillis, long usedMillis, Throwable cause) {
+        super("Call to " + function + " exceeded its budget of " + budgetMillis + " ms after " + usedMillis + " ms", cause);
+        this.budgetMillis = budgetMillis;
+        this.usedMillis = usedMillis;
+    }
+
+    long getBudgetMillis() {
+        return budgetMillis;
+    }
+
+    long getUsedMillis() {
+        return usedMillis;
+    }
+}
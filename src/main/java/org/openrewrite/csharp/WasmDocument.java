@@ -0,0 +1,139 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import org.openrewrite.csharp.internal.Utf8;
+
+/**
+ * A source whose parsed syntax tree stays resident in the guest between calls, so that applying several
+ * transforms to it one after the other, e.g. from different recipes of the same run, only parses it once.
+ * <p>
+ * A document belongs to the {@link Wasm} instance which opened it and must only be used while that
+ * instance is checked out. Instances keep their documents until they are evicted or the instance is closed,
+ * see {@link Wasm#document(java.nio.file.Path, String)}.
+ */
+final class WasmDocument {
+    private final Wasm wasm;
+    private final int handle;
+    private final boolean bom;
+
+    /**
+     * The text of the tree in the guest, unless {@link #dirty}.
+     */
+    private String text;
+
+    private boolean dirty;
+    private boolean closed;
+
+    WasmDocument(Wasm wasm, int handle, String text) {
+        this.wasm = wasm;
+        this.handle = handle;
+        this.bom = Utf8.startsWithBom(text);
+        this.text = text;
+    }
+
+    /**
+     * Applies the transforms in order to the document's tree.
+     *
+     * @return Whether the transforms replaced any part of the tree, which doesn't necessarily change its text.
+     */
+    boolean apply(int... transforms) {
+        checkOpen();
+        boolean changed = wasm.applyToDocument(handle, transforms);
+        dirty |= changed;
+        return changed;
+    }
+
+    /**
+     * @return The text of the document's current tree, which is only read back from the guest if a
+     * transform changed the tree since it was last rendered.
+     */
+    String render() {
+        checkOpen();
+        if (dirty) {
+            text = wasm.renderDocument(handle, bom);
+            dirty = false;
+        }
+        return text;
+    }
+
+    /**
+     * @return Whether the document's current tree has the text, without reading it back from the guest. Sources
+     * the document was transformed into typically are the very string it last rendered, and otherwise their cached
+     * hash codes rule out most differing texts before comparing them.
+     */
+    boolean hasText(String text) {
+        checkOpen();
+        return !dirty && (this.text == text || (this.text.hashCode() == text.hashCode() && this.text.equals(text)));
+    }
+
+    /**
+     * Replaces the text of the document by sending the guest only the span which differs between the current
+     * text and {@code newText}, so that the guest reparses incrementally rather than from scratch.
+     *
+     * @return {@code false} if the texts differ too much for an incremental reparse to pay off, or in their
+     * byte order mark, in which case the document is left as it was.
+     */
+    boolean edit(String newText) {
+        String oldText = render();
+        if (Utf8.startsWithBom(newText) != bom) {
+            return false;
+        }
+        int start = bom ? 1 : 0;
+        int max = Math.min(oldText.length(), newText.length());
+        int prefix = start;
+        while (prefix < max && oldText.charAt(prefix) == newText.charAt(prefix)) {
+            prefix++;
+        }
+        if (prefix > start && Character.isHighSurrogate(oldText.charAt(prefix - 1))) {
+            // never split a surrogate pair, which can't be encoded as UTF-8 on its own
+            prefix--;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix &&
+               oldText.charAt(oldText.length() - 1 - suffix) == newText.charAt(newText.length() - 1 - suffix)) {
+            suffix++;
+        }
+        if (suffix > 0 && Character.isLowSurrogate(oldText.charAt(oldText.length() - suffix))) {
+            suffix--;
+        }
+        int replacedLength = oldText.length() - prefix - suffix;
+        int replacementLength = newText.length() - prefix - suffix;
+        if (Math.max(replacedLength, replacementLength) > oldText.length() / 2) {
+            return false;
+        }
+        wasm.editDocument(handle, prefix - start, replacedLength, newText.substring(prefix, prefix + replacementLength));
+        text = newText;
+        return true;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void close() {
+        if (!closed) {
+            closed = true;
+            wasm.closeDocument(handle);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Wasm document " + handle + " is closed");
+        }
+    }
+}
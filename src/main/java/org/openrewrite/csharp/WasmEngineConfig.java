@@ -0,0 +1,178 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import io.github.kawamuray.wasmtime.Config;
+import lombok.Value;
+import org.openrewrite.internal.lang.Nullable;
+
+import java.util.Locale;
+
+/**
+ * Tuning of the wasmtime engine modules are compiled and instantiated with. Settings which are {@code null}
+ * keep wasmtime's defaults. A configuration is built with {@link #builder()}, from the
+ * {@code rewrite.csharp.wasm.engine.*} system properties with {@link #fromSystemProperties()}, or from
+ * settings such as {@code optLevel=speed, memoryReservation=dynamic} with {@link #parse(String)}, which
+ * {@code WasmEngineConfigBenchmark} compares.
+ * <p>
+ * Only settings the wasmtime-java binding exposes are offered. Wasmtime's parallel compilation and pooling
+ * allocator aren't, so asking for them fails when the settings are parsed rather than being silently ignored.
+ */
+@Value
+public class WasmEngineConfig {
+    static final String PROPERTY_PREFIX = "rewrite.csharp.wasm.engine.";
+
+    public enum OptLevel {
+        NONE, SPEED, SPEED_AND_SIZE
+    }
+
+    public enum MemoryReservation {
+        /**
+         * Reserves the whole 4 GiB address space of a linear memory plus guard pages up front, so that
+         * bounds checks are elided and growing memory never moves it.
+         */
+        STATIC,
+
+        /**
+         * Reserves linear memory as it grows, which saves address space when many instances are alive,
+         * at the cost of explicit bounds checks.
+         */
+        DYNAMIC
+    }
+
+    /**
+     * Cranelift's optimization level, trading compile time against the speed of the compiled code.
+     */
+    @Nullable
+    OptLevel optLevel;
+
+    @Nullable
+    MemoryReservation memoryReservation;
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static WasmEngineConfig fromSystemProperties() {
+        return builder()
+                .set("optLevel", System.getProperty(PROPERTY_PREFIX + "optLevel"))
+                .set("memoryReservation", System.getProperty(PROPERTY_PREFIX + "memoryReservation"))
+                .build();
+    }
+
+    /**
+     * @param settings Comma-separated {@code name=value} pairs, which override the system properties.
+     */
+    public static WasmEngineConfig parse(@Nullable String settings) {
+        WasmEngineConfig defaults = fromSystemProperties();
+        if (settings == null || settings.trim().isEmpty()) {
+            return defaults;
+        }
+        Builder builder = defaults.toBuilder();
+        for (String setting : settings.split(",")) {
+            int eq = setting.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Expected a wasm engine setting as name=value, but got '" + setting.trim() + "'");
+            }
+            builder.set(setting.substring(0, eq).trim(), setting.substring(eq + 1).trim());
+        }
+        return builder.build();
+    }
+
+    public Builder toBuilder() {
+        return new Builder()
+                .optLevel(optLevel)
+                .memoryReservation(memoryReservation);
+    }
+
+    /**
+     * @return A description of every setting, all of which affect the compiled code, which precompiled modules
+     * must match to be loadable.
+     */
+    String describe() {
+        StringBuilder description = new StringBuilder("epoch-interruption");
+        if (optLevel != null) {
+            description.append(";optLevel=").append(optLevel);
+        }
+        if (memoryReservation != null) {
+            description.append(";memoryReservation=").append(memoryReservation);
+        }
+        return description.toString();
+    }
+
+    Config toWasmtimeConfig() {
+        Config config = new Config().epochInterruption(true);
+        if (optLevel != null) {
+            config.craneliftOptLevel(io.github.kawamuray.wasmtime.OptLevel.valueOf(optLevel.name()));
+        }
+        if (memoryReservation == MemoryReservation.STATIC) {
+            config.staticMemoryMaximumSize(4L << 30);
+            config.staticMemoryGuardSize(2L << 30);
+        } else if (memoryReservation == MemoryReservation.DYNAMIC) {
+            // no memory fits a static reservation of size 0, so all of them are dynamic
+            config.staticMemoryMaximumSize(0L);
+        }
+        return config;
+    }
+
+    public static class Builder {
+        @Nullable
+        private OptLevel optLevel;
+
+        @Nullable
+        private MemoryReservation memoryReservation;
+
+        private Builder() {
+        }
+
+        public Builder optLevel(@Nullable OptLevel optLevel) {
+            this.optLevel = optLevel;
+            return this;
+        }
+
+        public Builder memoryReservation(@Nullable MemoryReservation memoryReservation) {
+            this.memoryReservation = memoryReservation;
+            return this;
+        }
+
+        /**
+         * Sets a setting by name from its textual value, ignoring {@code null} values.
+         *
+         * @throws IllegalArgumentException If the setting or its value is unknown, or the binding doesn't support it.
+         */
+        Builder set(String name, @Nullable String value) {
+            if (value == null || value.isEmpty()) {
+                return this;
+            }
+            switch (name) {
+                case "optLevel":
+                    return optLevel(OptLevel.valueOf(value.toUpperCase(Locale.ROOT)));
+                case "memoryReservation":
+                    return memoryReservation(MemoryReservation.valueOf(value.toUpperCase(Locale.ROOT)));
+                case "parallelCompilation":
+                case "poolingAllocator":
+                    throw new IllegalArgumentException("The wasm engine setting '" + name + "' is not supported by the wasmtime-java binding");
+                default:
+                    throw new IllegalArgumentException("Unknown wasm engine setting '" + name + "', expected one of " +
+                                                       "optLevel, memoryReservation");
+            }
+        }
+
+        public WasmEngineConfig build() {
+            return new WasmEngineConfig(optLevel, memoryReservation);
+        }
+    }
+}
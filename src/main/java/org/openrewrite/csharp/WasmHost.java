@@ -0,0 +1,69 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import org.openrewrite.internal.lang.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves data the guest requests on demand, rather than having the host push everything the guest might need
+ * into linear memory up front. The guest reads resources by key through the {@value #READ_FUNCTION} function,
+ * which every runtime links into the {@value #MODULE} import module.
+ */
+@FunctionalInterface
+interface WasmHost {
+    WasmHost NONE = key -> null;
+
+    String MODULE = "rewrite";
+    String READ_FUNCTION = "host_read";
+
+    /**
+     * Returned by {@value #READ_FUNCTION} for keys the host doesn't have a resource for.
+     */
+    int NOT_FOUND = -1;
+
+    /**
+     * @param key The key of the resource, such as {@code source:src/Program.cs}.
+     * @return The content of the resource from position 0 to its limit, or {@code null} if there is none.
+     * The guest only ever reads from the buffer, so it may be a read-only or memory-mapped view.
+     */
+    @Nullable
+    ByteBuffer resolve(String key);
+
+    /**
+     * Implements {@code host_read(key, keyLength, offset, dst, capacity) -> length}, which copies as much of the
+     * resource as fits into {@code capacity} bytes at {@code dst}, starting at {@code offset} into the resource.
+     * The guest learns the length of a resource by calling it with a capacity of {@code 0} first, and reads a
+     * slice of it by passing an offset.
+     *
+     * @return The length of the resource in bytes, or {@link #NOT_FOUND}.
+     */
+    static int read(WasmHost host, WasmInstance instance, int keyAddr, int keyLength, int offset, int dst, int capacity) {
+        ByteBuffer keyBytes = ByteBuffer.allocate(keyLength);
+        instance.read(keyAddr, keyBytes);
+        ByteBuffer resource = host.resolve(new String(keyBytes.array(), StandardCharsets.UTF_8));
+        if (resource == null) {
+            return NOT_FOUND;
+        }
+        int length = resource.limit();
+        if (capacity > 0 && offset >= 0 && offset < length) {
+            instance.write(dst, resource.slice(offset, Math.min(capacity, length - offset)));
+        }
+        return length;
+    }
+}
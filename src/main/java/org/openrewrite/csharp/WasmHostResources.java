@@ -0,0 +1,140 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import org.openrewrite.csharp.internal.Utf8;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.text.PlainText;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The resources of a recipe run the guest may request through {@link WasmHost}, namely {@code source:<path>}
+ * the text of a source file, as registered by callers of {@link Wasm#transformSource}, or else memory-mapped from
+ * the file at that path relative to the {@link #WasmHostResources(Path) root}. Either way, sources are served
+ * without their byte order mark, like sources pushed into linear memory.
+ * <p>
+ * Registered sources stay reachable for the rest of the recipe run, so only register the sources about to be
+ * transformed. Their text is encoded as UTF-8 when the guest requests it, and only the most recently requested
+ * resource is kept encoded, as the guest typically reads a resource twice in a row: once for its length and once
+ * for its content.
+ */
+final class WasmHostResources implements WasmHost {
+    static final String SOURCE_PREFIX = "source:";
+
+    private static final byte[] BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    @Nullable
+    private final Path root;
+
+    private final Map<String, PlainText> sources = new ConcurrentHashMap<>();
+
+    @Nullable
+    private volatile Resolved lastResolved;
+
+    WasmHostResources() {
+        this(null);
+    }
+
+    /**
+     * @param root The directory to resolve sources which weren't registered against, or {@code null} to only serve
+     *             registered sources.
+     */
+    WasmHostResources(@Nullable Path root) {
+        this.root = root == null ? null : root.toAbsolutePath().normalize();
+    }
+
+    void putSource(PlainText source) {
+        sources.put(source.getSourcePath().toString(), source);
+    }
+
+    @Override
+    public @Nullable ByteBuffer resolve(String key) {
+        if (!key.startsWith(SOURCE_PREFIX)) {
+            return null;
+        }
+        String path = key.substring(SOURCE_PREFIX.length());
+        PlainText source = sources.get(path);
+        Resolved last = lastResolved;
+        // a source registered again under the same path is a different resource
+        if (last != null && last.key.equals(key) && last.source == source) {
+            return last.resource.duplicate();
+        }
+        ByteBuffer resource;
+        if (source != null) {
+            String text = source.getText();
+            resource = StandardCharsets.UTF_8.encode(CharBuffer.wrap(text, Utf8.startsWithBom(text) ? 1 : 0, text.length()));
+        } else if (root != null) {
+            resource = map(root.resolve(path).normalize());
+        } else {
+            resource = null;
+        }
+        if (resource == null) {
+            return null;
+        }
+        lastResolved = new Resolved(key, source, resource);
+        return resource.duplicate();
+    }
+
+    @Nullable
+    private ByteBuffer map(Path file) {
+        if (!file.startsWith(root) || !Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            // symbolic links may still lead outside the root
+            if (!file.toRealPath().startsWith(root.toRealPath())) {
+                return null;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try (FileChannel channel = FileChannel.open(file)) {
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.remaining() >= BOM.length && mapped.get(0) == BOM[0] && mapped.get(1) == BOM[1] && mapped.get(2) == BOM[2]) {
+                mapped.position(BOM.length);
+                return mapped.slice();
+            }
+            return mapped;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class Resolved {
+        private final String key;
+
+        @Nullable
+        private final PlainText source;
+
+        private final ByteBuffer resource;
+
+        private Resolved(String key, @Nullable PlainText source, ByteBuffer resource) {
+            this.key = key;
+            this.source = source;
+            this.resource = resource;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import org.openrewrite.internal.lang.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An instantiated wasm module, as seen through the small set of operations the host needs to exchange
+ * data with the guest. Instances are not thread-safe. All integers in linear memory are little-endian.
+ */
+interface WasmInstance extends AutoCloseable {
+
+    /**
+     * Calls an exported function taking and returning 32-bit integers.
+     *
+     * @return The first result of the function, or {@code 0} if it doesn't return anything.
+     */
+    int call(String function, int... args);
+
+    /**
+     * Limits how long subsequent calls may run before they are interrupted with a trap. Runtimes
+     * which cannot interrupt a running call ignore the budget.
+     *
+     * @param millis The budget of every call in milliseconds, or {@code 0} for no limit.
+     */
+    default void setCallBudget(long millis) {
+    }
+
+    /**
+     * @return Whether {@code e}, thrown by {@link #call}, is the trap interrupting a call that exceeded its budget.
+     */
+    default boolean isBudgetExceeded(RuntimeException e) {
+        return false;
+    }
+
+    /**
+     * Sets the host serving the guest's requests for data from now on, {@link WasmHost#NONE} initially.
+     */
+    void setHost(WasmHost host);
+
+    default int malloc(int size) {
+        return call("malloc", size);
+    }
+
+    default void free(int addr) {
+        call("free", addr);
+    }
+
+    /**
+     * @return A view of the entire linear memory, if the runtime can expose it without copying, or
+     * {@code null} otherwise. The view is invalidated whenever the memory grows, so callers must not hold on to it
+     * across calls into the guest.
+     */
+    @Nullable
+    ByteBuffer directMemory();
+
+    /**
+     * @return The bits of the current value of one of the module's {@link WasmModules#exportedMutableGlobals exported mutable globals}.
+     */
+    long getGlobal(WasmModules.ExportedGlobal global);
+
+    void setGlobal(WasmModules.ExportedGlobal global, long bits);
+
+    int readInt(int addr);
+
+    void writeInt(int addr, int value);
+
+    /**
+     * Copies {@code dst.remaining()} bytes from linear memory at {@code addr} into {@code dst}.
+     */
+    void read(int addr, ByteBuffer dst);
+
+    /**
+     * Copies the remaining bytes of {@code src} into linear memory at {@code addr}.
+     */
+    void write(int addr, ByteBuffer src);
+
+    /**
+     * @return The current size of the linear memory in bytes.
+     */
+    long memorySize();
+
+    /**
+     * Grows the linear memory, if necessary, so that it is at least {@code bytes} large.
+     */
+    void ensureMemorySize(long bytes);
+
+    @Override
+    void close();
+}
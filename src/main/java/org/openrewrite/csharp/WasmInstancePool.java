@@ -0,0 +1,343 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import org.openrewrite.internal.lang.Nullable;
+
+import java.nio.file.Path;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A bounded pool of {@link Wasm} instances. A single instance is not thread-safe, as all calls
+ * share the same {@link Wasm.Heap}, so every caller checks out an instance for the duration of its
+ * call and returns it afterwards. Instances are created lazily up to {@link #getMaxSize()}, after
+ * which callers block until another caller returns its instance.
+ * <p>
+ * The .NET runtime in the guest never gives linear memory back, so instances are recycled once they
+ * served {@value #RECYCLE_AFTER_CALLS_PROPERTY} calls or their memory grew beyond
+ * {@value #MAX_MEMORY_MB_PROPERTY} megabytes. A retired instance is closed and replaced on a background
+ * thread, so that callers never wait for an instance to be recreated.
+ * <p>
+ * {@link #supplyAsync(Supplier)} runs work on the pool's own platform threads, one per instance, and queues
+ * everything beyond that. Callers on virtual threads therefore only ever wait on a future, while the native
+ * calls into the guest, which would pin a virtual thread to its carrier, run on the pool's threads.
+ */
+final class WasmInstancePool implements AutoCloseable {
+
+    static final String RECYCLE_AFTER_CALLS_PROPERTY = "rewrite.csharp.wasm.recycleAfterCalls";
+    static final String MAX_MEMORY_MB_PROPERTY = "rewrite.csharp.wasm.maxMemoryMb";
+
+    private static final System.Logger logger = System.getLogger(WasmInstancePool.class.getName());
+
+    private static final ExecutorService recycler = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "rewrite-csharp-wasm-recycler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final WasmRuntime runtime;
+    private final String modulePath;
+    private final int maxSize;
+    private final int recycleAfterCalls;
+    private final long maxMemoryBytes;
+    private final WasmMetrics metrics;
+    private final BlockingQueue<Wasm> idle;
+    private final AtomicInteger created = new AtomicInteger();
+
+    private volatile WasmHost host = WasmHost.NONE;
+    private volatile boolean closed;
+
+    @Nullable
+    private volatile ThreadPoolExecutor executor;
+
+    WasmInstancePool(String modulePath) {
+        this(WasmRuntime.forName(null), modulePath);
+    }
+
+    WasmInstancePool(String modulePath, int maxSize) {
+        this(WasmRuntime.forName(null), modulePath, maxSize);
+    }
+
+    WasmInstancePool(WasmRuntime runtime, String modulePath) {
+        this(runtime, modulePath, Runtime.getRuntime().availableProcessors());
+    }
+
+    WasmInstancePool(WasmRuntime runtime, String modulePath, int maxSize) {
+        this(runtime, modulePath, maxSize,
+                Integer.getInteger(RECYCLE_AFTER_CALLS_PROPERTY, 10_000),
+                Long.getLong(MAX_MEMORY_MB_PROPERTY, 1024) * 1024 * 1024,
+                WasmMetrics.global());
+    }
+
+    WasmInstancePool(WasmRuntime runtime, String modulePath, WasmMetrics metrics) {
+        this(runtime, modulePath, Runtime.getRuntime().availableProcessors(),
+                Integer.getInteger(RECYCLE_AFTER_CALLS_PROPERTY, 10_000),
+                Long.getLong(MAX_MEMORY_MB_PROPERTY, 1024) * 1024 * 1024,
+                metrics);
+    }
+
+    /**
+     * @param recycleAfterCalls The number of calls after which an instance is recycled, or {@code 0} for no limit.
+     * @param maxMemoryBytes    The size of linear memory above which an instance is recycled, or {@code 0} for no limit.
+     */
+    WasmInstancePool(WasmRuntime runtime, String modulePath, int maxSize, int recycleAfterCalls, long maxMemoryBytes,
+                     WasmMetrics metrics) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1, but was " + maxSize);
+        }
+        this.runtime = runtime;
+        this.modulePath = modulePath;
+        this.maxSize = maxSize;
+        this.recycleAfterCalls = recycleAfterCalls;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.metrics = metrics;
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+    }
+
+    String getModulePath() {
+        return modulePath;
+    }
+
+    int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Sets the host serving the requests of instances created from now on.
+     */
+    void setHost(WasmHost host) {
+        this.host = host;
+    }
+
+    /**
+     * Runs {@code fn} on an instance checked out for its duration. An instance a call failed on is
+     * discarded rather than returned to the pool, as the guest may have been left in any state.
+     */
+    <T> T withInstance(Function<Wasm, T> fn) {
+        return withInstance(null, fn);
+    }
+
+    /**
+     * Like {@link #withInstance(Function)}, but prefers an idle instance which keeps a {@link WasmDocument document}
+     * of the source open, so that the source doesn't need to be parsed again.
+     */
+    <T> T withInstance(@Nullable Path sourcePath, Function<Wasm, T> fn) {
+        return withInstance(metrics, sourcePath, fn);
+    }
+
+    /**
+     * Like {@link #withInstance(Path, Function)}, but records the checkout and the calls on the instance, including its
+     * creation, to {@code metrics} rather than to the pool's, which attributes them to the recipe sharing the pool.
+     */
+    <T> T withInstance(WasmMetrics metrics, @Nullable Path sourcePath, Function<Wasm, T> fn) {
+        Wasm wasm = sourcePath == null ? null : checkoutHolding(sourcePath, metrics);
+        if (wasm == null) {
+            wasm = checkout(metrics);
+        }
+        wasm.setMetrics(metrics);
+        T result;
+        try {
+            result = fn.apply(wasm);
+        } catch (RuntimeException | Error e) {
+            try {
+                discard(wasm);
+            } catch (RuntimeException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        wasm.setMetrics(this.metrics);
+        checkin(wasm);
+        return result;
+    }
+
+    Wasm checkout() {
+        return checkout(metrics);
+    }
+
+    private Wasm checkout(WasmMetrics metrics) {
+        if (closed) {
+            throw new IllegalStateException("Wasm instance pool for " + modulePath + " is closed");
+        }
+        long start = System.nanoTime();
+        Wasm wasm = idle.poll();
+        if (wasm != null) {
+            metrics.waitedForInstance(System.nanoTime() - start);
+            return wasm;
+        }
+        if (reserve()) {
+            wasm = newInstance(metrics);
+            try {
+                wasm.init();
+            } catch (RuntimeException e) {
+                created.decrementAndGet();
+                wasm.close();
+                throw e;
+            }
+            return wasm;
+        }
+        try {
+            while (!closed) {
+                wasm = idle.poll(100, TimeUnit.MILLISECONDS);
+                if (wasm != null) {
+                    metrics.waitedForInstance(System.nanoTime() - start);
+                    return wasm;
+                }
+            }
+            throw new IllegalStateException("Wasm instance pool for " + modulePath + " is closed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a Wasm instance", e);
+        }
+    }
+
+    /**
+     * Runs {@code work}, which typically checks out an instance, on one of the pool's threads.
+     *
+     * @throws RejectedExecutionException If the pool is closed.
+     */
+    <T> CompletableFuture<T> supplyAsync(Supplier<T> work) {
+        return CompletableFuture.supplyAsync(work, executor());
+    }
+
+    private ThreadPoolExecutor executor() {
+        ThreadPoolExecutor executor = this.executor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = this.executor;
+                if (executor == null) {
+                    // more threads than instances would only block on checkout
+                    executor = new ThreadPoolExecutor(maxSize, maxSize, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                        Thread thread = new Thread(r, "rewrite-csharp-wasm-call");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    executor.allowCoreThreadTimeOut(true);
+                    if (closed) {
+                        executor.shutdown();
+                    }
+                    this.executor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    @Nullable
+    private Wasm checkoutHolding(Path sourcePath, WasmMetrics metrics) {
+        if (closed) {
+            return null;
+        }
+        for (Wasm wasm : idle) {
+            // another caller may check the same instance out in between, in which case removing it fails
+            if (wasm.hasDocument(sourcePath) && idle.remove(wasm)) {
+                metrics.waitedForInstance(0);
+                return wasm;
+            }
+        }
+        return null;
+    }
+
+    void checkin(Wasm wasm) {
+        if (!closed && isWornOut(wasm)) {
+            recycle(wasm);
+        } else if (closed || !idle.offer(wasm)) {
+            discard(wasm);
+        } else if (closed && idle.remove(wasm)) {
+            // the pool was closed while the instance was offered, after close() had already drained the idle instances
+            discard(wasm);
+        }
+    }
+
+    void discard(Wasm wasm) {
+        try {
+            wasm.close();
+        } finally {
+            created.decrementAndGet();
+        }
+    }
+
+    private Wasm newInstance(WasmMetrics metrics) {
+        Wasm wasm = new Wasm(runtime, modulePath);
+        wasm.setMetrics(metrics);
+        wasm.setHost(host);
+        return wasm;
+    }
+
+    private boolean isWornOut(Wasm wasm) {
+        return (recycleAfterCalls > 0 && wasm.getCalls() >= recycleAfterCalls) ||
+               (maxMemoryBytes > 0 && wasm.getMemorySize() > maxMemoryBytes);
+    }
+
+    /**
+     * Closes the instance and creates its replacement in the background. The retired instance's slot
+     * stays reserved for the replacement, so no other caller creates one in the meantime.
+     */
+    private void recycle(Wasm wasm) {
+        recycler.execute(() -> {
+            try {
+                wasm.close();
+            } catch (RuntimeException e) {
+                logger.log(System.Logger.Level.DEBUG, "Unable to close retired wasm instance", e);
+            }
+            if (closed) {
+                created.decrementAndGet();
+                return;
+            }
+            Wasm replacement = newInstance(metrics);
+            try {
+                replacement.init();
+            } catch (RuntimeException e) {
+                created.decrementAndGet();
+                replacement.close();
+                logger.log(System.Logger.Level.WARNING, "Unable to replace retired wasm instance", e);
+                return;
+            }
+            checkin(replacement);
+        });
+    }
+
+    private boolean reserve() {
+        int n;
+        do {
+            n = created.get();
+            if (n >= maxSize) {
+                return false;
+            }
+        } while (!created.compareAndSet(n, n + 1));
+        return true;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        ThreadPoolExecutor executor;
+        synchronized (this) {
+            executor = this.executor;
+        }
+        if (executor != null) {
+            // queued work fails to check out an instance from now on
+            executor.shutdown();
+        }
+        Wasm wasm;
+        while ((wasm = idle.poll()) != null) {
+            wasm.close();
+        }
+    }
+}
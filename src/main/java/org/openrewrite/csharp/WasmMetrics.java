@@ -0,0 +1,103 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import java.util.List;
+
+/**
+ * Receives measurements of the wasm module's use. All durations are in nanoseconds. Implementations
+ * must be thread-safe and cheap, as they are called on every call into the guest.
+ * <p>
+ * Every recipe run records into the {@link org.openrewrite.csharp.table.WasmCallMetrics} data table.
+ * To feed the measurements into a monitoring system as well, register a listener with
+ * {@link #setGlobalListener(WasmMetrics)}.
+ */
+public interface WasmMetrics {
+
+    WasmMetrics NOOP = new WasmMetrics() {
+    };
+
+    /**
+     * A module was compiled, which may have been served from the {@link WasmModuleCache}.
+     */
+    default void compiled(String modulePath, long nanos) {
+    }
+
+    /**
+     * An instance was created and initialized, from a {@link WasmSnapshot} or from scratch.
+     */
+    default void instantiated(String runtime, String modulePath, long nanos, boolean fromSnapshot) {
+    }
+
+    /**
+     * A call into the guest completed.
+     *
+     * @param transforms  The transforms applied, in order.
+     * @param sources     The number of sources transformed by the call.
+     * @param bytesIn     The number of bytes marshalled into linear memory.
+     * @param bytesOut    The number of bytes read back from linear memory.
+     * @param memorySize  The size of the instance's linear memory after the call.
+     */
+    default void called(List<DemoRecipe.Transform> transforms, int sources, long nanos,
+                        long bytesIn, long bytesOut, long memorySize) {
+    }
+
+    /**
+     * A caller waited for an instance to become available in an instance pool.
+     */
+    default void waitedForInstance(long nanos) {
+    }
+
+    static void setGlobalListener(WasmMetrics listener) {
+        Global.listener = listener;
+    }
+
+    /**
+     * @return A listener forwarding to whichever listener is registered globally at the time of the call.
+     */
+    static WasmMetrics global() {
+        return Global.INSTANCE;
+    }
+
+    final class Global implements WasmMetrics {
+        private static final Global INSTANCE = new Global();
+        private static volatile WasmMetrics listener = NOOP;
+
+        private Global() {
+        }
+
+        @Override
+        public void compiled(String modulePath, long nanos) {
+            listener.compiled(modulePath, nanos);
+        }
+
+        @Override
+        public void instantiated(String runtime, String modulePath, long nanos, boolean fromSnapshot) {
+            listener.instantiated(runtime, modulePath, nanos, fromSnapshot);
+        }
+
+        @Override
+        public void called(List<DemoRecipe.Transform> transforms, int sources, long nanos,
+                           long bytesIn, long bytesOut, long memorySize) {
+            listener.called(transforms, sources, nanos, bytesIn, bytesOut, memorySize);
+        }
+
+        @Override
+        public void waitedForInstance(long nanos) {
+            listener.waitedForInstance(nanos);
+        }
+    }
+}
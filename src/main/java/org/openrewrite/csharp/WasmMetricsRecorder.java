@@ -0,0 +1,105 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import org.openrewrite.csharp.internal.LatencyHistogram;
+import org.openrewrite.csharp.table.WasmCallMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Aggregates the measurements of a single recipe in a run for its {@link WasmCallMetrics} data table,
+ * forwarding them to the {@link WasmMetrics#global() global listener} as well.
+ */
+final class WasmMetricsRecorder implements WasmMetrics {
+    private static final String COMPILE = "compile";
+    private static final String INSTANTIATE = "instantiate";
+    private static final String INSTANTIATE_FROM_SNAPSHOT = "instantiate (from snapshot)";
+    private static final String POOL_WAIT = "pool wait";
+
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    @Override
+    public void compiled(String modulePath, long nanos) {
+        stats(COMPILE).record(nanos, 0, 0, 0);
+        WasmMetrics.global().compiled(modulePath, nanos);
+    }
+
+    @Override
+    public void instantiated(String runtime, String modulePath, long nanos, boolean fromSnapshot) {
+        stats(fromSnapshot ? INSTANTIATE_FROM_SNAPSHOT : INSTANTIATE).record(nanos, 0, 0, 0);
+        WasmMetrics.global().instantiated(runtime, modulePath, nanos, fromSnapshot);
+    }
+
+    @Override
+    public void called(List<DemoRecipe.Transform> transforms, int sources, long nanos,
+                       long bytesIn, long bytesOut, long memorySize) {
+        String operation = transforms.stream().map(Enum::name).collect(joining(", "));
+        stats(sources == 1 ? operation : operation + " (batched)").record(nanos, bytesIn, bytesOut, memorySize);
+        WasmMetrics.global().called(transforms, sources, nanos, bytesIn, bytesOut, memorySize);
+    }
+
+    @Override
+    public void waitedForInstance(long nanos) {
+        stats(POOL_WAIT).record(nanos, 0, 0, 0);
+        WasmMetrics.global().waitedForInstance(nanos);
+    }
+
+    private Stats stats(String operation) {
+        return stats.computeIfAbsent(operation, k -> new Stats());
+    }
+
+    List<WasmCallMetrics.Row> rows() {
+        List<WasmCallMetrics.Row> rows = new ArrayList<>(stats.size());
+        stats.forEach((operation, s) -> rows.add(new WasmCallMetrics.Row(
+                operation,
+                s.latency.getCount(),
+                millis(s.latency.getPercentile(50)),
+                millis(s.latency.getPercentile(90)),
+                millis(s.latency.getPercentile(99)),
+                millis(s.latency.getMax()),
+                s.bytesIn.sum(),
+                s.bytesOut.sum(),
+                s.maxMemory.get())));
+        return rows;
+    }
+
+    private static double millis(long nanos) {
+        return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static class Stats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder bytesIn = new LongAdder();
+        final LongAdder bytesOut = new LongAdder();
+        final AtomicLong maxMemory = new AtomicLong();
+
+        void record(long nanos, long in, long out, long memorySize) {
+            latency.record(nanos);
+            bytesIn.add(in);
+            bytesOut.add(out);
+            maxMemory.accumulateAndGet(memorySize, Math::max);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import io.github.kawamuray.wasmtime.Config;
+import org.openrewrite.internal.lang.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+
+/**
+ * On-disk cache of precompiled wasm modules, so that short-lived JVMs don't have to JIT-compile the
+ * module on every start. The wasmtime-java binding can't serialize modules, so this points wasmtime's own
+ * compilation cache at the cache directory instead. Wasmtime keys its entries by its compiler version,
+ * the engine configuration and the module, so JVMs on different wasmtime-java versions can share the
+ * directory, and its cleanup only evicts the least recently used entries once the cache outgrows its limits.
+ * <p>
+ * The cache is enabled by default and can be disabled with {@code -Drewrite.csharp.wasm.cache=false}
+ * or relocated with {@code -Drewrite.csharp.wasm.cacheDir=<dir>}.
+ */
+final class WasmModuleCache {
+
+    private static final System.Logger logger = System.getLogger(WasmModuleCache.class.getName());
+
+    private static final String CONFIG_FILE = "wasmtime-cache.toml";
+
+    @Nullable
+    private static volatile WasmModuleCache defaultCache;
+
+    private final Path cacheDir;
+
+    @Nullable
+    private volatile Path configFile;
+
+    WasmModuleCache(Path cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    @Nullable
+    static WasmModuleCache getDefault() {
+        if (!Boolean.parseBoolean(System.getProperty("rewrite.csharp.wasm.cache", "true"))) {
+            return null;
+        }
+        WasmModuleCache cache = defaultCache;
+        if (cache == null) {
+            String dir = System.getProperty("rewrite.csharp.wasm.cacheDir");
+            Path cacheDir = dir != null ? Paths.get(dir) :
+                    Paths.get(System.getProperty("user.home"), ".rewrite", "cache", "csharp-wasm");
+            cache = defaultCache = new WasmModuleCache(cacheDir);
+        }
+        return cache;
+    }
+
+    /**
+     * Enables wasmtime's compilation cache in this directory for engines created from the config.
+     * A cache that can't be set up leaves the config as is, so the module is compiled as if there were no cache.
+     */
+    void configure(Config config) {
+        Path file = configFile();
+        if (file != null) {
+            config.cacheConfigLoad(file);
+        }
+    }
+
+    @Nullable
+    private Path configFile() {
+        Path file = configFile;
+        if (file == null) {
+            try {
+                file = writeConfigFile();
+                configFile = file;
+            } catch (IOException | RuntimeException e) {
+                // the cache is an optimization only, so a failure to set it up must not fail the recipe
+                logger.log(System.Logger.Level.WARNING, "Unable to set up the wasm module cache in " + cacheDir, e);
+            }
+        }
+        return file;
+    }
+
+    private Path writeConfigFile() throws IOException {
+        Files.createDirectories(cacheDir);
+        Path file = cacheDir.resolve(CONFIG_FILE);
+        byte[] content = ("[cache]\n" +
+                          "enabled = true\n" +
+                          "directory = \"" + tomlEscape(cacheDir.toAbsolutePath().toString()) + "\"\n")
+                .getBytes(StandardCharsets.UTF_8);
+        if (Files.isRegularFile(file) && Arrays.equals(Files.readAllBytes(file), content)) {
+            return file;
+        }
+        // another JVM may be reading the file concurrently, so replace it atomically
+        Path tmp = Files.createTempFile(cacheDir, CONFIG_FILE, ".tmp");
+        try {
+            Files.write(tmp, content);
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return file;
+    }
+
+    private static String tomlEscape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
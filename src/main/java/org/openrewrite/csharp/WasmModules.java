@@ -0,0 +1,288 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import io.github.kawamuray.wasmtime.Config;
+import io.github.kawamuray.wasmtime.Engine;
+import io.github.kawamuray.wasmtime.Module;
+import lombok.Value;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Process-wide registry of compiled wasm modules. Compiling the module is by far the most expensive
+ * part of setting up a {@link Wasm} instance, so every module is compiled once per JVM together with
+ * the {@link Engine} that owns it, and only the store, linker and instance are created per use.
+ * Modules are compiled separately for every {@link WasmEngineConfig} they are used with.
+ */
+final class WasmModules {
+
+    private static final Map<String, CompiledModule> modulesByPath = new ConcurrentHashMap<>();
+    private static final Map<ModuleKey, CompiledModule> modules = new ConcurrentHashMap<>();
+    private static final Map<String, String> sha256ByPath = new ConcurrentHashMap<>();
+    private static final Map<String, List<ExportedGlobal>> exportedGlobalsByPath = new ConcurrentHashMap<>();
+
+    private WasmModules() {
+    }
+
+    static CompiledModule get(String modulePath) {
+        return get(modulePath, WasmEngineConfig.fromSystemProperties());
+    }
+
+    static CompiledModule get(String modulePath, WasmEngineConfig engineConfig) {
+        return get(modulePath, engineConfig, WasmMetrics.global());
+    }
+
+    /**
+     * @param metrics Receives the compilation of the module, if this is its first use.
+     */
+    static CompiledModule get(String modulePath, WasmEngineConfig engineConfig, WasmMetrics metrics) {
+        return modulesByPath.computeIfAbsent(modulePath + "|" + engineConfig, k -> {
+            byte[] bytes = readModule(modulePath);
+            String sha256 = sha256(bytes);
+            sha256ByPath.putIfAbsent(modulePath, sha256);
+            ModuleKey key = new ModuleKey(modulePath, sha256, engineConfig);
+            return modules.computeIfAbsent(key, mk -> compile(mk, bytes, metrics));
+        });
+    }
+
+    /**
+     * @return The SHA-256 of the module's binary, without compiling it.
+     */
+    static String sha256Of(String modulePath) {
+        return sha256ByPath.computeIfAbsent(modulePath, path -> sha256(readModule(path)));
+    }
+
+    private static CompiledModule compile(ModuleKey key, byte[] bytes, WasmMetrics metrics) {
+        long start = System.nanoTime();
+        Config config = key.getEngineConfig().toWasmtimeConfig();
+        WasmModuleCache cache = WasmModuleCache.getDefault();
+        if (cache != null) {
+            cache.configure(config);
+        }
+        Engine engine = new Engine(config);
+        try {
+            Module module = Module.fromBinary(engine, bytes);
+            metrics.compiled(key.getModulePath(), System.nanoTime() - start);
+            return new CompiledModule(key, engine, module);
+        } catch (RuntimeException e) {
+            engine.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The mutable globals the module exports, read from its binary so that every runtime sees the same ones.
+     */
+    static List<ExportedGlobal> exportedMutableGlobals(String modulePath) {
+        return exportedGlobalsByPath.computeIfAbsent(modulePath, path -> exportedMutableGlobals(readModule(path)));
+    }
+
+    static List<ExportedGlobal> exportedMutableGlobals(byte[] module) {
+        ByteBuffer in = ByteBuffer.wrap(module);
+        in.position(8); // magic and version
+        List<byte[]> globals = new ArrayList<>(); // the value type and mutability of every global, imported ones first
+        List<ExportedGlobal> exported = new ArrayList<>();
+        while (in.hasRemaining()) {
+            int id = in.get();
+            int size = readUnsigned(in);
+            int end = in.position() + size;
+            if (id == 2) {
+                for (int count = readUnsigned(in); count > 0; count--) {
+                    skipName(in);
+                    skipName(in);
+                    int kind = in.get();
+                    switch (kind) {
+                        case 0: // function
+                            readUnsigned(in);
+                            break;
+                        case 1: // table
+                            in.get();
+                            skipLimits(in);
+                            break;
+                        case 2: // memory
+                            skipLimits(in);
+                            break;
+                        case 3: // global
+                            globals.add(new byte[]{in.get(), in.get()});
+                            break;
+                        case 4: // tag
+                            in.get();
+                            readUnsigned(in);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Unsupported import kind " + kind);
+                    }
+                }
+            } else if (id == 6) {
+                for (int count = readUnsigned(in); count > 0; count--) {
+                    globals.add(new byte[]{in.get(), in.get()});
+                    skipConstantExpression(in);
+                }
+            } else if (id == 7) {
+                for (int count = readUnsigned(in); count > 0; count--) {
+                    byte[] name = new byte[readUnsigned(in)];
+                    in.get(name);
+                    int kind = in.get();
+                    int index = readUnsigned(in);
+                    if (kind == 3 && globals.get(index)[1] == 1) {
+                        exported.add(new ExportedGlobal(new String(name, StandardCharsets.UTF_8), index, globals.get(index)[0]));
+                    }
+                }
+            }
+            in.position(end);
+        }
+        return exported;
+    }
+
+    private static int readUnsigned(ByteBuffer in) {
+        int result = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+    }
+
+    private static void skipName(ByteBuffer in) {
+        int length = readUnsigned(in);
+        in.position(in.position() + length);
+    }
+
+    private static void skipLimits(ByteBuffer in) {
+        int flags = in.get();
+        readUnsigned(in);
+        if ((flags & 1) != 0) {
+            readUnsigned(in);
+        }
+    }
+
+    private static void skipConstantExpression(ByteBuffer in) {
+        while (true) {
+            int opcode = in.get() & 0xFF;
+            switch (opcode) {
+                case 0x0B: // end
+                    return;
+                case 0x41: // i32.const
+                case 0x42: // i64.const
+                case 0x23: // global.get
+                case 0xD2: // ref.func
+                    while (in.get() < 0) {
+                        // skip the LEB128 immediate
+                    }
+                    break;
+                case 0x43: // f32.const
+                    in.position(in.position() + 4);
+                    break;
+                case 0x44: // f64.const
+                    in.position(in.position() + 8);
+                    break;
+                case 0xD0: // ref.null
+                    in.get();
+                    break;
+                case 0x6A: // i32.add, i32.sub, i32.mul and their i64 counterparts
+                case 0x6B:
+                case 0x6C:
+                case 0x7C:
+                case 0x7D:
+                case 0x7E:
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported opcode 0x" + Integer.toHexString(opcode) + " in a constant expression");
+            }
+        }
+    }
+
+    static byte[] readModule(String modulePath) {
+        try {
+            Path devTimePath = Paths.get("src/main/resources/" + modulePath);
+            if (Files.exists(devTimePath)) {
+                return Files.readAllBytes(devTimePath);
+            }
+            try (InputStream in = requireNonNull(WasmModules.class.getClassLoader().getResourceAsStream(modulePath))) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                in.transferTo(out);
+                return out.toByteArray();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Value
+    static class ModuleKey {
+        String modulePath;
+        String sha256;
+        WasmEngineConfig engineConfig;
+    }
+
+    /**
+     * A mutable global the module exports, whose value is part of the guest's state besides its linear memory.
+     */
+    @Value
+    static class ExportedGlobal {
+        static final byte I32 = 0x7F;
+        static final byte I64 = 0x7E;
+        static final byte F32 = 0x7D;
+        static final byte F64 = 0x7C;
+
+        String name;
+        int index;
+
+        /**
+         * One of {@link #I32}, {@link #I64}, {@link #F32} or {@link #F64}.
+         */
+        byte type;
+    }
+
+    /**
+     * A module compiled once per JVM. Both the engine and the module are safe to share between
+     * threads and are never closed, as they live as long as the registry.
+     */
+    @Value
+    static class CompiledModule {
+        ModuleKey key;
+        Engine engine;
+        Module module;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import org.openrewrite.Validated;
+import org.openrewrite.internal.lang.Nullable;
+
+/**
+ * The options shared by the recipes that run on the C# wasm module. Option annotations only take constants,
+ * so the recipes reference these instead of repeating the text.
+ */
+final class WasmRecipeOptions {
+
+    static final String RUNTIME_DISPLAY_NAME = "Wasm runtime";
+    static final String RUNTIME_DESCRIPTION = "The wasm runtime to run the recipe on. Defaults to the `" +
+                                              WasmRuntime.RUNTIME_PROPERTY + "` system property, or `" +
+                                              WasmtimeRuntime.NAME + "` if that isn't set.";
+    static final String RUNTIME_EXAMPLE = ChicoryRuntime.NAME;
+
+    private WasmRecipeOptions() {
+    }
+
+    static Validated<Object> validate(Validated<Object> validated, @Nullable String runtime) {
+        return validated.and(Validated.test("runtime",
+                "must be one of " + WasmtimeRuntime.NAME + ", " + ChicoryRuntime.NAME,
+                runtime,
+                r -> r == null || WasmtimeRuntime.NAME.equalsIgnoreCase(r) || ChicoryRuntime.NAME.equalsIgnoreCase(r)));
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import lombok.Value;
+import org.openrewrite.internal.lang.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * On-disk cache of transform results, so that sources which didn't change since the last run skip the
+ * wasm module entirely. Entries are addressed by the hash of the module, the transforms and the source,
+ * and hold either an "unchanged" flag or the transformed source:
+ * <pre>
+ *     &lt;cache dir&gt;/&lt;key prefix&gt;/&lt;key&gt;.result
+ * </pre>
+ * Entries are written to a temporary file and atomically moved into place, so several JVMs can share the
+ * cache. The last modified time of an entry is its last use, and once the cache outgrows its size limit,
+ * the least recently used entries are evicted by whichever JVM holds the cache's lock file.
+ * <p>
+ * The cache is disabled by default. Enable it with {@code -Drewrite.csharp.wasm.resultCache=true},
+ * relocate it with {@code -Drewrite.csharp.wasm.resultCacheDir=<dir>} and bound it with
+ * {@code -Drewrite.csharp.wasm.resultCacheMaxMb=<megabytes>}, which defaults to 512.
+ */
+final class WasmResultCache {
+
+    private static final System.Logger logger = System.getLogger(WasmResultCache.class.getName());
+
+    private static final String EXTENSION = ".result";
+    private static final byte UNCHANGED = 0;
+    private static final byte CHANGED = 1;
+
+    /**
+     * Entries used more recently than this aren't touched again, to avoid a write on every hit.
+     */
+    private static final long TOUCH_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    @Nullable
+    private static volatile WasmResultCache defaultCache;
+
+    private final Path cacheDir;
+    private final long maxBytes;
+
+    /**
+     * Bytes written since the size of the cache was last checked, starting out as if the cache was full,
+     * so that the first store checks the size left behind by earlier runs.
+     */
+    private final AtomicLong written;
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    WasmResultCache(Path cacheDir, long maxBytes) {
+        this.cacheDir = cacheDir;
+        this.maxBytes = maxBytes;
+        this.written = new AtomicLong(maxBytes);
+    }
+
+    @Nullable
+    static WasmResultCache getDefault() {
+        if (!Boolean.parseBoolean(System.getProperty("rewrite.csharp.wasm.resultCache", "false"))) {
+            return null;
+        }
+        WasmResultCache cache = defaultCache;
+        if (cache == null) {
+            String dir = System.getProperty("rewrite.csharp.wasm.resultCacheDir");
+            Path cacheDir = dir != null ? Paths.get(dir) :
+                    Paths.get(System.getProperty("user.home"), ".rewrite", "cache", "csharp-wasm-results");
+            long maxBytes = Long.getLong("rewrite.csharp.wasm.resultCacheMaxMb", 512) * 1024 * 1024;
+            cache = defaultCache = new WasmResultCache(cacheDir, maxBytes);
+        }
+        return cache;
+    }
+
+    static String key(String moduleSha256, int[] transforms, String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(moduleSha256.getBytes(StandardCharsets.US_ASCII));
+            ByteBuffer ordinals = ByteBuffer.allocate((transforms.length + 1) * Integer.BYTES);
+            ordinals.putInt(transforms.length);
+            for (int transform : transforms) {
+                ordinals.putInt(transform);
+            }
+            digest.update(ordinals.flip());
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return The cached result or {@code null} if there is no usable cache entry.
+     */
+    @Nullable
+    Hit load(String key) {
+        Path entry = entry(key);
+        try {
+            byte[] bytes = Files.readAllBytes(entry);
+            if (bytes.length == 0 || (bytes[0] != UNCHANGED && bytes[0] != CHANGED)) {
+                deleteQuietly(entry);
+                return null;
+            }
+            touch(entry);
+            return new Hit(bytes[0] == UNCHANGED ? null : new String(bytes, 1, bytes.length - 1, StandardCharsets.UTF_8));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.DEBUG, "Unable to read cached wasm transform result " + entry, e);
+            return null;
+        }
+    }
+
+    /**
+     * @param after The transformed source, or {@code null} if the transforms didn't change the source.
+     */
+    void store(String key, @Nullable String after) {
+        Path entry = entry(key);
+        try {
+            Files.createDirectories(entry.getParent());
+            byte[] text = after == null ? new byte[0] : after.getBytes(StandardCharsets.UTF_8);
+            byte[] bytes = new byte[text.length + 1];
+            bytes[0] = after == null ? UNCHANGED : CHANGED;
+            System.arraycopy(text, 0, bytes, 1, text.length);
+            Path tmp = Files.createTempFile(entry.getParent(), key, ".tmp");
+            try {
+                Files.write(tmp, bytes);
+                Files.move(tmp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                deleteQuietly(tmp);
+            }
+            if (written.addAndGet(bytes.length) >= maxBytes / 10) {
+                evictIfNecessary();
+            }
+        } catch (IOException | UncheckedIOException e) {
+            // the cache is an optimization only, so a failure to populate it must not fail the recipe
+            logger.log(System.Logger.Level.DEBUG, "Unable to cache wasm transform result in " + cacheDir, e);
+        }
+    }
+
+    private void evictIfNecessary() throws IOException {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try (FileChannel lockFile = FileChannel.open(cacheDir.resolve(".lock"), CREATE, WRITE);
+             FileLock lock = lockFile.tryLock()) {
+            if (lock == null) {
+                // another JVM is evicting already
+                return;
+            }
+            written.set(0);
+            List<Path> entries = new ArrayList<>();
+            List<BasicFileAttributes> attributes = new ArrayList<>();
+            long size = 0;
+            try (Stream<Path> files = Files.walk(cacheDir, 2)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    if (file.getFileName().toString().endsWith(EXTENSION)) {
+                        try {
+                            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                            entries.add(file);
+                            attributes.add(attrs);
+                            size += attrs.size();
+                        } catch (NoSuchFileException ignored) {
+                            // evicted concurrently
+                        }
+                    }
+                }
+            }
+            if (size <= maxBytes) {
+                return;
+            }
+            // evict down to 90% of the limit, so that eviction doesn't run again right away
+            long target = maxBytes - maxBytes / 10;
+            List<Integer> byLastUse = new ArrayList<>(entries.size());
+            for (int i = 0; i < entries.size(); i++) {
+                byLastUse.add(i);
+            }
+            byLastUse.sort(Comparator.comparing(i -> attributes.get(i).lastModifiedTime()));
+            for (int i : byLastUse) {
+                if (size <= target) {
+                    break;
+                }
+                deleteQuietly(entries.get(i));
+                size -= attributes.get(i).size();
+            }
+        } catch (OverlappingFileLockException ignored) {
+            // the lock is held by this JVM through another cache instance
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private Path entry(String key) {
+        return cacheDir.resolve(key.substring(0, 2)).resolve(key + EXTENSION);
+    }
+
+    private static void touch(Path entry) {
+        try {
+            long now = System.currentTimeMillis();
+            if (now - Files.getLastModifiedTime(entry).toMillis() > TOUCH_INTERVAL_MILLIS) {
+                Files.setLastModifiedTime(entry, FileTime.fromMillis(now));
+            }
+        } catch (IOException ignored) {
+            // evicted concurrently, or the cache is read-only
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // another JVM may be using the same cache concurrently
+        }
+    }
+
+    @Value
+    static class Hit {
+        /**
+         * The transformed source, or {@code null} if the transforms didn't change the source.
+         */
+        @Nullable
+        String after;
+    }
+}
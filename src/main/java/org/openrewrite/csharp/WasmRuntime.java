@@ -0,0 +1,80 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import org.openrewrite.internal.lang.Nullable;
+
+import java.util.Locale;
+
+/**
+ * A wasm runtime able to instantiate the C# transformation module. Different deployments favor different
+ * runtimes: a native JIT like wasmtime on servers, and a pure-JVM runtime like Chicory where native
+ * libraries are not an option.
+ */
+interface WasmRuntime {
+
+    /**
+     * Selects the runtime used when none is configured explicitly.
+     */
+    String RUNTIME_PROPERTY = "rewrite.csharp.wasm.runtime";
+
+    String getName();
+
+    /**
+     * @return What distinguishes instances of this runtime from those of others, such as its engine configuration.
+     */
+    default String getId() {
+        return getName();
+    }
+
+    /**
+     * Creates a new, independent instance of the module. Implementations should cache whatever
+     * they can share between instances of the same module, such as the compiled module itself.
+     */
+    WasmInstance instantiate(String modulePath);
+
+    /**
+     * Like {@link #instantiate(String)}, reporting the compilation of the module to {@code metrics} if this is its first use.
+     */
+    default WasmInstance instantiate(String modulePath, WasmMetrics metrics) {
+        return instantiate(modulePath);
+    }
+
+    /**
+     * @param name The name of a runtime, or {@code null} for the runtime selected by the
+     *             {@value RUNTIME_PROPERTY} system property, defaulting to wasmtime.
+     */
+    static WasmRuntime forName(@Nullable String name) {
+        return forName(name, null);
+    }
+
+    /**
+     * @param engineConfig The {@link WasmEngineConfig#parse(String) engine settings} of a wasmtime runtime, or
+     *                     {@code null} to follow the system properties. Other runtimes ignore it.
+     */
+    static WasmRuntime forName(@Nullable String name, @Nullable String engineConfig) {
+        String runtime = name == null ? System.getProperty(RUNTIME_PROPERTY, WasmtimeRuntime.NAME) : name;
+        switch (runtime.toLowerCase(Locale.ROOT)) {
+            case WasmtimeRuntime.NAME:
+                return engineConfig == null ? WasmtimeRuntime.INSTANCE : new WasmtimeRuntime(WasmEngineConfig.parse(engineConfig));
+            case ChicoryRuntime.NAME:
+                return ChicoryRuntime.INSTANCE;
+            default:
+                throw new IllegalArgumentException("Unknown wasm runtime '" + runtime + "', expected one of " +
+                                                   WasmtimeRuntime.NAME + ", " + ChicoryRuntime.NAME);
+        }
+    }
+}
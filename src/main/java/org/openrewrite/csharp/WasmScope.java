@@ -0,0 +1,175 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.csharp.table.WasmCallMetrics;
+
+import java.lang.ref.Cleaner;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Owns the wasm instances used during a single recipe run, so that their native memory is released
+ * as soon as the run completes rather than whenever the garbage collector gets around to it. This also
+ * bounds the lifetime of the {@link WasmDocument documents} the instances keep resident to the run.
+ * <p>
+ * The scope is stored in the {@link ExecutionContext} and shared by all wasm recipes of the run. Each recipe
+ * records its metrics separately, and the scope is closed when the last recipe which used it completes.
+ * A scope which becomes unreachable without having been closed is closed by a {@link Cleaner} as a last
+ * resort, which logs the leak together with where the scope was opened.
+ */
+final class WasmScope implements AutoCloseable {
+    private static final String SCOPE_KEY = WasmScope.class.getName();
+
+    private static final System.Logger logger = System.getLogger(WasmScope.class.getName());
+    private static final Cleaner cleaner = Cleaner.create();
+
+    private final State state;
+    private final Cleaner.Cleanable cleanable;
+    private final Map<WasmCallMetrics, WasmMetricsRecorder> metrics = new IdentityHashMap<>();
+    private final WasmHostResources hostResources = new WasmHostResources();
+
+    private WasmScope() {
+        this.state = new State(new Exception("Wasm scope opened here"));
+        this.cleanable = cleaner.register(this, state);
+    }
+
+    /**
+     * @return The scope of the run the context belongs to, opening it on first use.
+     */
+    static WasmScope current(ExecutionContext ctx) {
+        synchronized (ctx) {
+            WasmScope scope = ctx.getMessage(SCOPE_KEY);
+            if (scope == null || scope.state.closed) {
+                scope = new WasmScope();
+                ctx.putMessage(SCOPE_KEY, scope);
+            }
+            return scope;
+        }
+    }
+
+    /**
+     * Closes the scope of the run the context belongs to, if one was opened. Closing an already closed scope has no effect.
+     */
+    static void close(ExecutionContext ctx) {
+        WasmScope scope;
+        synchronized (ctx) {
+            scope = ctx.pollMessage(SCOPE_KEY);
+        }
+        if (scope != null) {
+            scope.close();
+        }
+    }
+
+    /**
+     * Records the metrics of the recipe owning the data table in it, and closes the scope of the run the context
+     * belongs to once no other recipe which used it is left to complete.
+     */
+    static void complete(ExecutionContext ctx, WasmCallMetrics callMetrics) {
+        WasmScope scope;
+        boolean last;
+        synchronized (ctx) {
+            scope = ctx.getMessage(SCOPE_KEY);
+            if (scope == null) {
+                return;
+            }
+            WasmMetricsRecorder recorder;
+            synchronized (scope.metrics) {
+                recorder = scope.metrics.remove(callMetrics);
+                last = scope.metrics.isEmpty();
+            }
+            if (recorder != null) {
+                for (WasmCallMetrics.Row row : recorder.rows()) {
+                    callMetrics.insertRow(ctx, row);
+                }
+            }
+            if (last) {
+                ctx.pollMessage(SCOPE_KEY);
+            }
+        }
+        if (last) {
+            scope.close();
+        }
+    }
+
+    /**
+     * @return Where to record the use of the scope's instances by the recipe owning the data table.
+     */
+    WasmMetrics metrics(WasmCallMetrics callMetrics) {
+        synchronized (metrics) {
+            return metrics.computeIfAbsent(callMetrics, k -> new WasmMetricsRecorder());
+        }
+    }
+
+    /**
+     * @return The sources and project metadata the guests of this run may request on demand.
+     */
+    WasmHostResources getHostResources() {
+        return hostResources;
+    }
+
+    WasmInstancePool pool(WasmRuntime runtime, String modulePath) {
+        if (state.closed) {
+            throw new IllegalStateException("Wasm scope is closed");
+        }
+        WasmInstancePool pool = state.pools.computeIfAbsent(runtime.getId() + ":" + modulePath,
+                k -> {
+                    WasmInstancePool created = new WasmInstancePool(runtime, modulePath, WasmMetrics.global());
+                    created.setHost(hostResources);
+                    return created;
+                });
+        if (state.closed) {
+            // closed concurrently, possibly before the pool was added
+            pool.close();
+        }
+        return pool;
+    }
+
+    @Override
+    public void close() {
+        state.closed = true;
+        cleanable.clean();
+    }
+
+    /**
+     * Everything the cleanup needs, which must not reference the scope itself to let it become unreachable.
+     */
+    private static final class State implements Runnable {
+        private final Map<String, WasmInstancePool> pools = new ConcurrentHashMap<>();
+        private final Exception origin;
+
+        private volatile boolean closed;
+
+        private State(Exception origin) {
+            this.origin = origin;
+        }
+
+        @Override
+        public void run() {
+            if (!closed) {
+                closed = true;
+                logger.log(System.Logger.Level.WARNING, "Wasm scope was never closed, releasing its " +
+                                                        pools.size() + " instance pool(s) on garbage collection", origin);
+            }
+            for (WasmInstancePool pool : pools.values()) {
+                pool.close();
+            }
+            pools.clear();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import org.openrewrite.Tree;
+import org.openrewrite.marker.Markers;
+import org.openrewrite.marker.SearchResult;
+import org.openrewrite.text.PlainText;
+
+import java.util.*;
+
+/**
+ * Marks the ranges of a {@link PlainText} which {@link Wasm#find(String, int...)} matched with {@link SearchResult}s,
+ * splitting the text into snippets the same way {@link org.openrewrite.text.Find} does.
+ */
+final class WasmSearchResult {
+
+    private WasmSearchResult() {
+    }
+
+    /**
+     * @param matches The start, end and transform ordinal of every match, flattened into consecutive triples.
+     *                Overlapping matches are merged into a single marked range describing all their transforms.
+     */
+    static PlainText mark(PlainText text, int[] matches) {
+        if (matches.length == 0) {
+            return text;
+        }
+        Integer[] order = new Integer[matches.length / 3];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = 3 * i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> matches[i]));
+
+        String content = text.getText();
+        DemoRecipe.Transform[] transforms = DemoRecipe.Transform.values();
+        List<PlainText.Snippet> snippets = new ArrayList<>();
+        int previousEnd = 0;
+        for (int i = 0; i < order.length; ) {
+            int start = Math.max(previousEnd, matches[order[i]]);
+            int end = matches[order[i] + 1];
+            Set<String> description = new LinkedHashSet<>();
+            do {
+                end = Math.max(end, matches[order[i] + 1]);
+                description.add(transforms[matches[order[i] + 2]].name());
+                i++;
+            } while (i < order.length && matches[order[i]] < end);
+            if (start > previousEnd) {
+                snippets.add(snippet(content.substring(previousEnd, start)));
+            }
+            snippets.add(SearchResult.found(snippet(content.substring(start, end)), String.join(", ", description)));
+            previousEnd = end;
+        }
+        if (previousEnd < content.length()) {
+            snippets.add(snippet(content.substring(previousEnd)));
+        }
+        return text.withText("").withSnippets(snippets);
+    }
+
+    private static PlainText.Snippet snippet(String text) {
+        return new PlainText.Snippet(Tree.randomId(), Markers.EMPTY, text);
+    }
+}
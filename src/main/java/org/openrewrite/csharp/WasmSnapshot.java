@@ -0,0 +1,163 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import lombok.Value;
+import org.openrewrite.internal.lang.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * An image of the linear memory of a warmed-up instance, which new instances adopt so that their first call
+ * doesn't have to initialize Roslyn and its visitors all over again. Instantiating still runs the module's
+ * initializer, as neither runtime binding can instantiate it without and still expose its globals, so restoring
+ * only pays off if the warm-up it skips takes longer than copying the image. {@code WasmInitBenchmark} compares
+ * both, which is why snapshots are disabled unless {@value #SNAPSHOT_PROPERTY} is set.
+ * <p>
+ * Between calls, the guest's state lives in linear memory and in the mutable globals it exports. The shadow
+ * stack is unwound and the internal globals are back at the values a freshly instantiated module starts
+ * with. Restoring an instance therefore copies the image over its memory, sets the exported globals to
+ * their captured values and adopts the heap buffer the image already contains. The image is kept in a
+ * memory-mapped temporary file, so that it doesn't occupy the Java heap and the operating system can page it out.
+ */
+@Value
+class WasmSnapshot {
+
+    /**
+     * Set to {@code true} to restore new instances from a snapshot.
+     */
+    static final String SNAPSHOT_PROPERTY = "rewrite.csharp.wasm.snapshot";
+
+    private static final String WARMUP_SOURCE = "class C\n{\n    int i = 42;\n    bool b = true;\n}\n";
+
+    private static final Map<String, CompletableFuture<WasmSnapshot>> snapshots = new ConcurrentHashMap<>();
+
+    MappedByteBuffer image;
+    List<WasmModules.ExportedGlobal> globals;
+    long[] globalValues;
+    int heapBase;
+    int heapCapacity;
+
+    /**
+     * @return The snapshot of the module on the runtime, taking it on first use, or {@code null} if snapshots are disabled.
+     */
+    static @Nullable WasmSnapshot get(WasmRuntime runtime, String modulePath) {
+        return get(runtime, modulePath, WasmMetrics.global());
+    }
+
+    /**
+     * @param metrics Receives the compilation of the module, if taking the snapshot is its first use.
+     */
+    static @Nullable WasmSnapshot get(WasmRuntime runtime, String modulePath, WasmMetrics metrics) {
+        if (!Boolean.parseBoolean(System.getProperty(SNAPSHOT_PROPERTY, "false"))) {
+            return null;
+        }
+        // the snapshot is taken outside the map, so that taking it doesn't block access to the snapshots of other modules
+        String key = runtime.getId() + ":" + modulePath;
+        CompletableFuture<WasmSnapshot> snapshot = new CompletableFuture<>();
+        CompletableFuture<WasmSnapshot> existing = snapshots.putIfAbsent(key, snapshot);
+        if (existing != null) {
+            return existing.join();
+        }
+        try {
+            snapshot.complete(take(runtime, modulePath, metrics));
+        } catch (RuntimeException | Error e) {
+            // let the next instance try again
+            snapshots.remove(key, snapshot);
+            snapshot.completeExceptionally(e);
+            throw e;
+        }
+        return snapshot.join();
+    }
+
+    private static WasmSnapshot take(WasmRuntime runtime, String modulePath, WasmMetrics metrics) {
+        Wasm wasm = new Wasm(runtime, modulePath, false);
+        // the warm-up is not the caller's work, but compiling the module on the way would have been
+        wasm.setMetrics(new WasmMetrics() {
+            @Override
+            public void compiled(String compiledPath, long nanos) {
+                metrics.compiled(compiledPath, nanos);
+            }
+        });
+        try {
+            wasm.init();
+            // run every transform once, so that Roslyn and all visitors are initialized in the image
+            wasm.transform(WARMUP_SOURCE, Arrays.stream(DemoRecipe.Transform.values()).mapToInt(Enum::ordinal).toArray());
+            return capture(wasm.getInstance(), WasmModules.exportedMutableGlobals(modulePath), wasm.getHeap());
+        } finally {
+            wasm.close();
+        }
+    }
+
+    private static WasmSnapshot capture(WasmInstance instance, List<WasmModules.ExportedGlobal> globals, Wasm.Heap heap) {
+        long[] globalValues = new long[globals.size()];
+        for (int i = 0; i < globalValues.length; i++) {
+            globalValues[i] = instance.getGlobal(globals.get(i));
+        }
+        try {
+            Path file = Files.createTempFile("rewrite-csharp-wasm", ".snapshot");
+            file.toFile().deleteOnExit();
+            long size = instance.memorySize();
+            try (FileChannel channel = FileChannel.open(file, READ, WRITE, TRUNCATE_EXISTING)) {
+                ByteBuffer memory = instance.directMemory();
+                if (memory != null) {
+                    writeFully(channel, memory.duplicate().clear());
+                } else {
+                    ByteBuffer chunk = ByteBuffer.allocate(1024 * 1024);
+                    for (long addr = 0; addr < size; addr += chunk.capacity()) {
+                        chunk.clear().limit((int) Math.min(chunk.capacity(), size - addr));
+                        instance.read((int) addr, chunk);
+                        writeFully(channel, chunk.flip());
+                    }
+                }
+                return new WasmSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), globals, globalValues,
+                        heap.getBase(), heap.getCapacity());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Copies the image into the linear memory of a freshly instantiated module, and restores its exported globals.
+     */
+    void restore(WasmInstance instance) {
+        instance.ensureMemorySize(image.capacity());
+        instance.write(0, image.duplicate().clear());
+        for (int i = 0; i < globalValues.length; i++) {
+            instance.setGlobal(globals.get(i), globalValues[i]);
+        }
+    }
+}
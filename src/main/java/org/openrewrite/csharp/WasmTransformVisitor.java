@@ -0,0 +1,123 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.csharp.table.WasmCallBudgets;
+import org.openrewrite.csharp.table.WasmCallMetrics;
+import org.openrewrite.marker.Markup;
+import org.openrewrite.text.PlainText;
+import org.openrewrite.text.PlainTextVisitor;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies an ordered list of transforms to a C# source in a single call into the wasm module,
+ * so that the source is only parsed once no matter how many transforms are applied.
+ */
+class WasmTransformVisitor extends PlainTextVisitor<ExecutionContext> {
+    private final WasmRuntime runtime;
+    private final int[] transforms;
+    private final TransformPrefilter prefilter;
+    private final WasmCallBudgets callBudgets;
+    private final WasmCallMetrics callMetrics;
+
+    WasmTransformVisitor(WasmRuntime runtime, List<DemoRecipe.Transform> transforms, WasmCallBudgets callBudgets,
+                         WasmCallMetrics callMetrics) {
+        this.runtime = runtime;
+        this.transforms = transforms.stream().mapToInt(Enum::ordinal).toArray();
+        this.prefilter = TransformPrefilter.of(transforms);
+        this.callBudgets = callBudgets;
+        this.callMetrics = callMetrics;
+    }
+
+    @Override
+    public PlainText visitText(PlainText text, ExecutionContext ctx) {
+        if (!prefilter.mayChange(text.getText())) {
+            return text;
+        }
+        return transform(pool(ctx), WasmScope.current(ctx).metrics(callMetrics), text, transforms, callBudgets, ctx);
+    }
+
+    /**
+     * Same as {@link #visitText(PlainText, ExecutionContext)}, but transforms the source on one of the instance
+     * pool's threads rather than the caller's.
+     */
+    CompletableFuture<PlainText> visitTextAsync(PlainText text, ExecutionContext ctx) {
+        if (!prefilter.mayChange(text.getText())) {
+            return CompletableFuture.completedFuture(text);
+        }
+        WasmInstancePool pool = pool(ctx);
+        WasmMetrics metrics = WasmScope.current(ctx).metrics(callMetrics);
+        return pool.supplyAsync(() -> transform(pool, metrics, text, transforms, callBudgets, ctx));
+    }
+
+    private WasmInstancePool pool(ExecutionContext ctx) {
+        return WasmScope.current(ctx).pool(runtime, DemoRecipe.WASM_MODULE);
+    }
+
+    /**
+     * Transforms a single source through its {@link WasmDocument document}, recording the budget the call used. A source the call exceeded its
+     * budget on is left unchanged and marked with a warning instead. Results are looked up in and added
+     * to the {@link WasmResultCache}, if it is enabled.
+     */
+    static PlainText transform(WasmInstancePool pool, WasmMetrics metrics, PlainText text, int[] transforms,
+                               WasmCallBudgets callBudgets, ExecutionContext ctx) {
+        WasmResultCache cache = WasmResultCache.getDefault();
+        String key = null;
+        if (cache != null) {
+            key = WasmResultCache.key(WasmModules.sha256Of(pool.getModulePath()), transforms, text.getText());
+            WasmResultCache.Hit hit = cache.load(key);
+            if (hit != null) {
+                return hit.getAfter() == null ? text : text.withText(hit.getAfter());
+            }
+        }
+
+        String sourcePath = text.getSourcePath().toString();
+        String after;
+        try {
+            after = pool.withInstance(metrics, text.getSourcePath(), wasm -> {
+                long callNanos = wasm.getCallNanos();
+                String transformed = wasm.transform(text.getSourcePath(), text.getText(), transforms);
+                insertRow(callBudgets, ctx, new WasmCallBudgets.Row(sourcePath, 1, wasm.getCallBudgetMillis(),
+                        TimeUnit.NANOSECONDS.toMillis(wasm.getCallNanos() - callNanos), false));
+                return transformed;
+            });
+        } catch (WasmBudgetExceededException e) {
+            insertRow(callBudgets, ctx, new WasmCallBudgets.Row(sourcePath, 1, e.getBudgetMillis(), e.getUsedMillis(), true));
+            return Markup.warn(text, e);
+        }
+        if (cache != null) {
+            cache.store(key, after);
+        }
+        return after == null ? text : text.withText(after);
+    }
+
+    /**
+     * Records calls which exceeded or came close to their budget, as the many calls well within it say nothing about
+     * how to tune the budget. Data tables aren't thread-safe, and sources may be transformed on the instance pool's threads.
+     */
+    static void insertRow(WasmCallBudgets callBudgets, ExecutionContext ctx, WasmCallBudgets.Row row) {
+        if (!row.isExceeded() && (row.getBudgetMillis() <= 0 || row.getUsedMillis() * 2 < row.getBudgetMillis())) {
+            return;
+        }
+        synchronized (ctx) {
+            callBudgets.insertRow(ctx, row);
+        }
+    }
+}
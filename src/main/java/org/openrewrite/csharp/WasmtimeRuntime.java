@@ -0,0 +1,249 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import io.github.kawamuray.wasmtime.*;
+import io.github.kawamuray.wasmtime.wasi.WasiCtx;
+import io.github.kawamuray.wasmtime.wasi.WasiCtxBuilder;
+import org.openrewrite.internal.lang.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the module on wasmtime, which compiles it to native code. Compiled modules are shared across
+ * instances through {@link WasmModules}.
+ * <p>
+ * Call budgets use wasmtime's epoch interruption: a single daemon thread advances the epoch of every
+ * engine in use each {@link #EPOCH_TICK_MILLIS} ms, and a call traps once its store's epoch deadline passes.
+ * Unlike fuel, which is charged on every instruction, epoch checks are nearly free.
+ */
+final class WasmtimeRuntime implements WasmRuntime {
+    static final String NAME = "wasmtime";
+    static final WasmtimeRuntime INSTANCE = new WasmtimeRuntime(null);
+
+    static final long EPOCH_TICK_MILLIS = 10;
+
+    /**
+     * Effectively no deadline, while leaving room to add the current epoch without overflowing.
+     */
+    private static final long NO_DEADLINE = Long.MAX_VALUE / 2;
+
+    private static final Set<Engine> engines = ConcurrentHashMap.newKeySet();
+    private static final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "rewrite-csharp-wasm-epoch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        ticker.scheduleAtFixedRate(() -> {
+            for (Engine engine : engines) {
+                engine.incrementEpoch();
+            }
+        }, EPOCH_TICK_MILLIS, EPOCH_TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * {@code null} to follow the system properties.
+     */
+    @Nullable
+    private final WasmEngineConfig engineConfig;
+
+    WasmtimeRuntime(@Nullable WasmEngineConfig engineConfig) {
+        this.engineConfig = engineConfig;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getId() {
+        return NAME + "[" + getEngineConfig().describe() + "]";
+    }
+
+    WasmEngineConfig getEngineConfig() {
+        return engineConfig == null ? WasmEngineConfig.fromSystemProperties() : engineConfig;
+    }
+
+    @Override
+    public WasmInstance instantiate(String modulePath) {
+        return instantiate(modulePath, WasmMetrics.global());
+    }
+
+    @Override
+    public WasmInstance instantiate(String modulePath, WasmMetrics metrics) {
+        return new WasmtimeInstance(WasmModules.get(modulePath, getEngineConfig(), metrics));
+    }
+
+    static final class WasmtimeInstance implements WasmInstance {
+        private static final int PAGE_SIZE = 64 * 1024;
+
+        private final WasiCtx wasi;
+        private final Store<Void> store;
+        private final Linker linker;
+        private final Memory memory;
+        private final Func hostRead;
+
+        private long budgetTicks = NO_DEADLINE;
+        private volatile WasmHost host = WasmHost.NONE;
+
+        WasmtimeInstance(WasmModules.CompiledModule compiled) {
+            engines.add(compiled.getEngine());
+            wasi = new WasiCtxBuilder().build();
+            store = new Store<>(null, compiled.getEngine(), wasi);
+            // the module's start function must not trap before a budget is set
+            store.setEpochDeadline(NO_DEADLINE);
+            linker = new Linker(compiled.getEngine());
+            WasiCtx.addToLinker(linker);
+            hostRead = hostRead();
+            linker.define(store, WasmHost.MODULE, WasmHost.READ_FUNCTION, Extern.fromFunc(hostRead));
+            linker.module(store, "", compiled.getModule());
+            memory = linker.get(store, "", "memory").get().memory();
+        }
+
+        private Func hostRead() {
+            FuncType type = new FuncType(
+                    new Val.Type[]{Val.Type.I32, Val.Type.I32, Val.Type.I32, Val.Type.I32, Val.Type.I32},
+                    new Val.Type[]{Val.Type.I32});
+            return new Func(store, type, (caller, params, results) -> {
+                results[0] = Val.fromI32(WasmHost.read(host, this, params[0].i32(), params[1].i32(),
+                        params[2].i32(), params[3].i32(), params[4].i32()));
+            });
+        }
+
+        @Override
+        public void setHost(WasmHost host) {
+            this.host = host;
+        }
+
+        @Override
+        public void setCallBudget(long millis) {
+            // the epoch may advance right after the deadline is set, so allow for one extra tick
+            budgetTicks = millis <= 0 ? NO_DEADLINE : (millis + EPOCH_TICK_MILLIS - 1) / EPOCH_TICK_MILLIS + 1;
+        }
+
+        @Override
+        public boolean isBudgetExceeded(RuntimeException e) {
+            // a passed epoch deadline traps with wasmtime's interrupt trap code
+            return e instanceof WasmFunctionError.TrapError && ((WasmFunctionError.TrapError) e).trap() == Trap.INTERRUPT;
+        }
+
+        @Override
+        public int call(String function, int... args) {
+            store.setEpochDeadline(budgetTicks);
+            Val[] params = new Val[args.length];
+            for (int i = 0; i < args.length; i++) {
+                params[i] = Val.fromI32(args[i]);
+            }
+            try (Func func = linker.get(store, "", function).get().func()) {
+                Val[] result = func.call(store, params);
+                return result.length == 0 ? 0 : result[0].i32();
+            }
+        }
+
+        @Override
+        public ByteBuffer directMemory() {
+            return memory.buffer(store).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        @Override
+        public long getGlobal(WasmModules.ExportedGlobal global) {
+            try (Global g = linker.get(store, "", global.getName()).get().global()) {
+                Val value = g.get(store);
+                switch (global.getType()) {
+                    case WasmModules.ExportedGlobal.I32:
+                        return value.i32();
+                    case WasmModules.ExportedGlobal.I64:
+                        return value.i64();
+                    case WasmModules.ExportedGlobal.F32:
+                        return Float.floatToRawIntBits(value.f32());
+                    default:
+                        return Double.doubleToRawLongBits(value.f64());
+                }
+            }
+        }
+
+        @Override
+        public void setGlobal(WasmModules.ExportedGlobal global, long bits) {
+            try (Global g = linker.get(store, "", global.getName()).get().global()) {
+                switch (global.getType()) {
+                    case WasmModules.ExportedGlobal.I32:
+                        g.set(store, Val.fromI32((int) bits));
+                        break;
+                    case WasmModules.ExportedGlobal.I64:
+                        g.set(store, Val.fromI64(bits));
+                        break;
+                    case WasmModules.ExportedGlobal.F32:
+                        g.set(store, Val.fromF32(Float.intBitsToFloat((int) bits)));
+                        break;
+                    default:
+                        g.set(store, Val.fromF64(Double.longBitsToDouble(bits)));
+                }
+            }
+        }
+
+        @Override
+        public int readInt(int addr) {
+            return directMemory().getInt(addr);
+        }
+
+        @Override
+        public void writeInt(int addr, int value) {
+            directMemory().putInt(addr, value);
+        }
+
+        @Override
+        public void read(int addr, ByteBuffer dst) {
+            dst.put(directMemory().slice(addr, dst.remaining()));
+        }
+
+        @Override
+        public void write(int addr, ByteBuffer src) {
+            directMemory().put(addr, src, src.position(), src.remaining());
+            src.position(src.limit());
+        }
+
+        @Override
+        public long memorySize() {
+            return (long) memory.size(store) * PAGE_SIZE;
+        }
+
+        @Override
+        public void ensureMemorySize(long bytes) {
+            long missing = bytes - memorySize();
+            if (missing > 0) {
+                memory.grow(store, (int) ((missing + PAGE_SIZE - 1) / PAGE_SIZE));
+            }
+        }
+
+        @Override
+        public void close() {
+            memory.close();
+            hostRead.close();
+            linker.close();
+            store.close();
+            wasi.close();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp.internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Finds any of a set of ASCII keywords in a text in a single pass, using an Aho-Corasick automaton
+ * compiled into a dense transition table. Matches are plain substring matches, so the matcher may report
+ * keywords which are part of a longer identifier, but never misses one.
+ */
+public final class KeywordMatcher {
+    private static final int ALPHABET = 128;
+
+    /**
+     * {@code transitions[state * ALPHABET + c]} is the next state after reading {@code c} in {@code state}.
+     */
+    private final int[] transitions;
+    private final boolean[] accepting;
+
+    private KeywordMatcher(int[] transitions, boolean[] accepting) {
+        this.transitions = transitions;
+        this.accepting = accepting;
+    }
+
+    public static KeywordMatcher of(Collection<String> keywords) {
+        List<int[]> trie = new ArrayList<>();
+        List<Boolean> terminal = new ArrayList<>();
+        trie.add(new int[ALPHABET]);
+        terminal.add(false);
+        for (String keyword : keywords) {
+            if (keyword.isEmpty()) {
+                throw new IllegalArgumentException("Keywords must not be empty");
+            }
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                if (c >= ALPHABET) {
+                    throw new IllegalArgumentException("Keywords must be ASCII: " + keyword);
+                }
+                if (trie.get(state)[c] == 0) {
+                    trie.get(state)[c] = trie.size();
+                    trie.add(new int[ALPHABET]);
+                    terminal.add(false);
+                }
+                state = trie.get(state)[c];
+            }
+            terminal.set(state, true);
+        }
+
+        // turn the trie into a DFA by following failure links breadth-first
+        int states = trie.size();
+        int[] transitions = new int[states * ALPHABET];
+        boolean[] accepting = new boolean[states];
+        int[] fail = new int[states];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = trie.get(0)[c];
+            transitions[c] = next;
+            if (next != 0) {
+                queue.add(next);
+            }
+        }
+        for (int s = 0; s < states; s++) {
+            accepting[s] = terminal.get(s);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+            accepting[state] |= accepting[fail[state]];
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = trie.get(state)[c];
+                if (next != 0) {
+                    fail[next] = transitions[fail[state] * ALPHABET + c];
+                    transitions[state * ALPHABET + c] = next;
+                    queue.add(next);
+                } else {
+                    transitions[state * ALPHABET + c] = transitions[fail[state] * ALPHABET + c];
+                }
+            }
+        }
+        return new KeywordMatcher(transitions, accepting);
+    }
+
+    public boolean containsAny(CharSequence text) {
+        int[] transitions = this.transitions;
+        boolean[] accepting = this.accepting;
+        int state = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            state = c < ALPHABET ? transitions[state * ALPHABET + c] : 0;
+            if (accepting[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp.internal;
+
+public final class Utf8 {
+
+    public static final char BOM = '\uFEFF';
+
+    private Utf8() {
+    }
+
+    /**
+     * Computes the number of bytes {@code text.subSequence(start, text.length())} occupies when encoded
+     * as UTF-8, without encoding it. Unpaired surrogates count as a single byte, matching the {@code '?'}
+     * replacement both {@link String#getBytes(java.nio.charset.Charset)} and a replacing
+     * {@link java.nio.charset.CharsetEncoder} emit for them.
+     */
+    public static int encodedLength(CharSequence text, int start) {
+        int len = 0;
+        for (int i = start, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                len++;
+            } else if (c < 0x800) {
+                len += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(text.charAt(i + 1))) {
+                len += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                len++;
+            } else {
+                len += 3;
+            }
+        }
+        return len;
+    }
+
+    public static boolean startsWithBom(CharSequence text) {
+        return text.length() > 0 && text.charAt(0) == BOM;
+    }
+}
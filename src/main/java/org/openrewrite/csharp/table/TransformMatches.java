@@ -0,0 +1,45 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp.table;
+
+import lombok.Value;
+import org.openrewrite.Column;
+import org.openrewrite.DataTable;
+import org.openrewrite.Recipe;
+
+public class TransformMatches extends DataTable<TransformMatches.Row> {
+
+    public TransformMatches(Recipe recipe) {
+        super(recipe, Row.class,
+                TransformMatches.class.getName(),
+                "Transform matches", "Where the C# demo transforms would change source files, to estimate their impact before rewriting anything.");
+    }
+
+    @Value
+    public static class Row {
+        @Column(displayName = "Source path",
+                description = "The source file the transform would change.")
+        String sourcePath;
+
+        @Column(displayName = "Transform",
+                description = "The transform which would change the source file.")
+        String transform;
+
+        @Column(displayName = "Matches",
+                description = "The number of places in the source file the transform would change.")
+        int matches;
+    }
+}
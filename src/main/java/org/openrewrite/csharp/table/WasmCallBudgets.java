@@ -0,0 +1,55 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp.table;
+
+import lombok.Value;
+import org.openrewrite.Column;
+import org.openrewrite.DataTable;
+import org.openrewrite.Recipe;
+
+public class WasmCallBudgets extends DataTable<WasmCallBudgets.Row> {
+
+    public WasmCallBudgets(Recipe recipe) {
+        super(recipe, Row.class,
+                WasmCallBudgets.class.getName(),
+                "Wasm call budgets", "The calls into the wasm module which exceeded or used at least half of their execution budget, " +
+                                     "to tune the budget from real runs.");
+    }
+
+    @Value
+    public static class Row {
+        @Column(displayName = "Source path",
+                description = "The source file transformed by the call, or the first of the source files for batched calls.")
+        String sourcePath;
+
+        @Column(displayName = "Source files",
+                description = "The number of source files transformed by the call.")
+        int sourceFiles;
+
+        @Column(displayName = "Budget (ms)",
+                description = "The budget of the call in milliseconds, or 0 if the call had no budget.")
+        long budgetMillis;
+
+        @Column(displayName = "Used (ms)",
+                description = "The time spent in the wasm module in milliseconds, summed over all calls it took to transform " +
+                              "the source files, as a transform may take several calls which each have the budget.")
+        long usedMillis;
+
+        @Column(displayName = "Exceeded",
+                description = "Whether the call was interrupted for exceeding its budget, in which case the source files were skipped.")
+        boolean exceeded;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp.table;
+
+import lombok.Value;
+import org.openrewrite.Column;
+import org.openrewrite.DataTable;
+import org.openrewrite.Recipe;
+
+public class WasmCallMetrics extends DataTable<WasmCallMetrics.Row> {
+
+    public WasmCallMetrics(Recipe recipe) {
+        super(recipe, Row.class,
+                WasmCallMetrics.class.getName(),
+                "Wasm call metrics", "Latency distribution, marshalled bytes and memory size of the operations on the wasm module during the run.");
+    }
+
+    @Value
+    public static class Row {
+        @Column(displayName = "Operation",
+                description = "The operation measured: `instantiate`, `pool wait`, or the transforms applied by a call.")
+        String operation;
+
+        @Column(displayName = "Count",
+                description = "The number of times the operation was performed.")
+        long count;
+
+        @Column(displayName = "p50 (ms)",
+                description = "The median latency of the operation in milliseconds.")
+        double p50Millis;
+
+        @Column(displayName = "p90 (ms)",
+                description = "The 90th percentile latency of the operation in milliseconds.")
+        double p90Millis;
+
+        @Column(displayName = "p99 (ms)",
+                description = "The 99th percentile latency of the operation in milliseconds.")
+        double p99Millis;
+
+        @Column(displayName = "Max (ms)",
+                description = "The maximum latency of the operation in milliseconds.")
+        double maxMillis;
+
+        @Column(displayName = "Bytes in",
+                description = "The total number of bytes marshalled into linear memory.")
+        long bytesIn;
+
+        @Column(displayName = "Bytes out",
+                description = "The total number of bytes read back from linear memory.")
+        long bytesOut;
+
+        @Column(displayName = "Max memory (bytes)",
+                description = "The largest size of an instance's linear memory after the operation.")
+        long maxMemoryBytes;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import com.dylibso.chicory.runtime.InterpreterMachine;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChicoryRuntimeTest {
+
+    @Test
+    void aotClassNamedAfterModule() {
+        assertThat(ChicoryRuntime.aotClassName(DemoRecipe.WASM_MODULE)).isEqualTo("org.openrewrite.csharp.aot.WasmAot");
+        assertThat(ChicoryRuntime.aotClassName("dir/other.wasm")).isEqualTo("org.openrewrite.csharp.aot.OtherAot");
+    }
+
+    @Test
+    void runsAheadOfTimeCompiledModule() {
+        assertThat(ChicoryRuntime.INSTANCE.load(DemoRecipe.WASM_MODULE).isAot()).isTrue();
+        try (ChicoryRuntime.ChicoryInstance instance =
+                     (ChicoryRuntime.ChicoryInstance) ChicoryRuntime.INSTANCE.instantiate(DemoRecipe.WASM_MODULE)) {
+            assertThat(instance.getMachine()).isNotInstanceOf(InterpreterMachine.class);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.test.RecipeSpec;
+import org.openrewrite.test.RewriteTest;
+
+import static org.openrewrite.test.SourceSpecs.text;
+
+class DemoBatchRecipeTest implements RewriteTest {
+
+    @Override
+    public void defaults(RecipeSpec spec) {
+        spec.recipe(new DemoBatchRecipe(DemoRecipe.Transform.IntTypeToLongType, 2));
+    }
+
+    @Test
+    void multipleBatches() {
+        rewriteRun(
+          text(
+            //language=c#
+            """
+              int i = 42;
+              """,
+            """
+              long i = 42;
+              """,
+            spec -> spec.path("src/A.cs")
+          ),
+          text(
+            //language=c#
+            """
+              string s = "unchanged";
+              """,
+            spec -> spec.path("src/B.cs")
+          ),
+          text(
+            //language=c#
+            """
+              \uFEFFint j = 1;
+              """,
+            """
+              \uFEFFlong j = 1;
+              """,
+            spec -> spec.path("src/C.cs")
+          )
+        );
+    }
+}
@@ -16,9 +16,25 @@
 package org.openrewrite.csharp;
 
 import org.junit.jupiter.api.Test;
+import org.junitpioneer.jupiter.SetSystemProperty;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Tree;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.marker.Markup;
 import org.openrewrite.test.RecipeSpec;
 import org.openrewrite.test.RewriteTest;
+import org.openrewrite.text.PlainText;
+import org.openrewrite.text.PlainTextParser;
 
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.openrewrite.test.SourceSpecs.text;
 
 class DemoRecipeTest implements RewriteTest {
@@ -59,4 +75,117 @@ class DemoRecipeTest implements RewriteTest {
           )
         );
     }
-}
\ No newline at end of file
+
+    @Test
+    void unchanged() {
+        rewriteRun(
+          text(
+            //language=c#
+            """
+              string s = "no int here";
+              """,
+            spec -> spec.path("src/Test.cs")
+          )
+        );
+    }
+
+    @Test
+    void chicoryRuntime() {
+        rewriteRun(
+          spec -> spec.recipe(new DemoRecipe(DemoRecipe.Transform.IntTypeToLongType, ChicoryRuntime.NAME)),
+          text(
+            //language=c#
+            """
+              \uFEFFint i = 42;
+              """,
+            """
+              \uFEFFlong i = 42;
+              """,
+            spec -> spec.path("src/Test.cs")
+          )
+        );
+    }
+
+    @Test
+    void largerThanInitialHeap() {
+        StringBuilder before = new StringBuilder();
+        StringBuilder after = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            before.append("int i").append(i).append(" = ").append(i).append(";\n");
+            after.append("long i").append(i).append(" = ").append(i).append(";\n");
+        }
+        rewriteRun(
+          text(before.toString(), after.toString(), spec -> spec.path("src/Generated.cs"))
+        );
+    }
+
+    @Test
+    @SetSystemProperty(key = Wasm.CALL_BUDGET_PROPERTY, value = "1")
+    void overBudget() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            text.append("int i").append(i).append(" = ").append(i).append(";\n");
+        }
+        DemoRecipe recipe = new DemoRecipe(DemoRecipe.Transform.IntTypeToLongType);
+        PlainText source = ((PlainText) PlainTextParser.builder().build().parse(text.toString()).findFirst().orElseThrow())
+          .withSourcePath(Paths.get("src/Generated.cs"));
+
+        ExecutionContext ctx = new InMemoryExecutionContext();
+        try {
+            Tree after = recipe.getVisitor().visit(source, ctx);
+            assertThat(after).isInstanceOf(PlainText.class);
+            assertThat(((PlainText) after).getText()).isEqualTo(source.getText());
+            assertThat(after.getMarkers().findFirst(Markup.Warn.class)).isPresent();
+        } finally {
+            recipe.onComplete(ctx);
+        }
+    }
+
+    @Test
+    void validatesRuntime() {
+        assertThat(new DemoRecipe(DemoRecipe.Transform.IntTypeToLongType, "CHICORY").validate().isValid()).isTrue();
+        assertThat(new DemoRecipe(DemoRecipe.Transform.IntTypeToLongType, "wasmer").validate().isInvalid()).isTrue();
+    }
+
+    @Test
+    void parallelMatchesSerial() throws Exception {
+        DemoRecipe recipe = new DemoRecipe(DemoRecipe.Transform.IntTypeToLongType);
+        List<PlainText> sources = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String text = "class C" + i + " { int f" + i + " = " + i + "; bool b = true; }\n";
+            PlainText source = (PlainText) PlainTextParser.builder().build().parse(text).findFirst().orElseThrow();
+            sources.add(source.withSourcePath(Paths.get("src/C" + i + ".cs")));
+        }
+
+        ExecutionContext ctx = new InMemoryExecutionContext();
+        List<String> serial = new ArrayList<>();
+        for (PlainText source : sources) {
+            serial.add(transform(recipe, source, ctx));
+        }
+        assertThat(serial).allMatch(text -> text.contains("long f"));
+
+        int threads = Runtime.getRuntime().availableProcessors() * 2;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (PlainText source : sources) {
+                futures.add(executor.submit(() -> transform(recipe, source, ctx)));
+            }
+            List<String> parallel = new ArrayList<>();
+            for (Future<String> future : futures) {
+                parallel.add(future.get());
+            }
+            assertThat(parallel).containsExactlyElementsOf(serial);
+        } finally {
+            executor.shutdownNow();
+            recipe.onComplete(ctx);
+        }
+    }
+
+    private static String transform(DemoRecipe recipe, PlainText source, ExecutionContext ctx) {
+        TreeVisitor<?, ExecutionContext> visitor = recipe.getVisitor();
+        Tree after = visitor.visit(source, ctx);
+        assertThat(after).isInstanceOf(PlainText.class);
+        return ((PlainText) after).getText();
+    }
+}
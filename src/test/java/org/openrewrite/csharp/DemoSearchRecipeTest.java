@@ -0,0 +1,72 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.csharp.table.TransformMatches;
+import org.openrewrite.test.RecipeSpec;
+import org.openrewrite.test.RewriteTest;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.openrewrite.test.SourceSpecs.text;
+
+class DemoSearchRecipeTest implements RewriteTest {
+
+    @Override
+    public void defaults(RecipeSpec spec) {
+        spec.recipe(new DemoSearchRecipe(List.of(
+          DemoRecipe.Transform.IntTypeToLongType,
+          DemoRecipe.Transform.TrueToFalse
+        )));
+    }
+
+    @Test
+    void marksMatchesWithoutTransforming() {
+        rewriteRun(
+          spec -> spec.dataTable(TransformMatches.Row.class, rows -> assertThat(rows).containsExactly(
+            new TransformMatches.Row("src/Test.cs", "IntTypeToLongType", 1),
+            new TransformMatches.Row("src/Test.cs", "TrueToFalse", 1)
+          )),
+          text(
+            //language=c#
+            """
+              int i = 42;
+              bool b = true;
+              """,
+            """
+              ~~(IntTypeToLongType)~~>int i = 42;
+              bool b = ~~(TrueToFalse)~~>true;
+              """,
+            spec -> spec.path("src/Test.cs")
+          )
+        );
+    }
+
+    @Test
+    void noMatches() {
+        rewriteRun(
+          text(
+            //language=c#
+            """
+              bool b = false;
+              """,
+            spec -> spec.path("src/Test.cs")
+          )
+        );
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.openrewrite.csharp.DemoRecipe.Transform.*;
+
+class TransformPrefilterTest {
+
+    @Test
+    void skipsSourcesWithoutKeywords() {
+        TransformPrefilter prefilter = TransformPrefilter.of(List.of(DoToWhile, TrueToFalse));
+        assertThat(prefilter.mayChange("class C { bool b = false; }")).isFalse();
+        assertThat(prefilter.mayChange("class C { bool b = true; }")).isTrue();
+        assertThat(prefilter.mayChange("class C { void M() { do { } while (x); } }")).isTrue();
+    }
+
+    @Test
+    void transformWithoutKeywordsMayChangeAnything() {
+        TransformPrefilter prefilter = TransformPrefilter.of(List.of(TrueToFalse, DefaultInitAllVars));
+        assertThat(prefilter.mayChange("class C { }")).isTrue();
+    }
+}
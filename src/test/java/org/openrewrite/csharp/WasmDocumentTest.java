@@ -0,0 +1,89 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import org.junit.jupiter.api.Test;
+import org.junitpioneer.jupiter.SetSystemProperty;
+
+import java.nio.file.Paths;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WasmDocumentTest {
+
+    @Test
+    void appliesTransformsToResidentTree() {
+        String source = "class C\n{\n    int i = 42;\n}\n";
+        Wasm wasm = new Wasm("wasm.wasm");
+        try {
+            wasm.init();
+            WasmDocument document = wasm.document(Paths.get("C.cs"), source);
+            assertThat(document.apply(DemoRecipe.Transform.IntTypeToLongType.ordinal())).isTrue();
+            assertThat(document.apply(DemoRecipe.Transform.ClassDeclToStructDecl.ordinal())).isTrue();
+            assertThat(document.hasText(source)).isFalse();
+            String transformed = document.render();
+            assertThat(transformed).contains("long i", "struct C");
+            assertThat(document.hasText(transformed)).isTrue();
+            assertThat(document.hasText(new String(transformed.toCharArray()))).isTrue();
+
+            // the transformed text is still resident, while a different text replaces the document
+            assertThat(wasm.document(Paths.get("C.cs"), transformed)).isSameAs(document);
+            assertThat(wasm.document(Paths.get("C.cs"), source)).isNotSameAs(document);
+            assertThat(document.isClosed()).isTrue();
+        } finally {
+            wasm.close();
+        }
+    }
+
+    @Test
+    void editsDocumentIncrementally() {
+        String source = "\uFEFFclass C\n{\n    int i = 42;\n    // \uD83D\uDE00\n}\n";
+        String edited = source.replace("42", "43").replace("\uD83D\uDE00", "\uD83D\uDE01");
+        Wasm wasm = new Wasm("wasm.wasm");
+        try {
+            wasm.init();
+            WasmDocument document = wasm.document(Paths.get("C.cs"), source);
+            assertThat(document.edit(edited)).isTrue();
+            assertThat(wasm.document(Paths.get("C.cs"), edited)).isSameAs(document);
+            assertThat(document.apply(DemoRecipe.Transform.IntTypeToLongType.ordinal())).isTrue();
+            assertThat(document.render()).isEqualTo(edited.replace("int i", "long i"));
+
+            // too different to be worth an incremental reparse
+            assertThat(document.edit("class D {}")).isFalse();
+        } finally {
+            wasm.close();
+        }
+    }
+
+    @Test
+    @SetSystemProperty(key = Wasm.MAX_DOCUMENTS_PROPERTY, value = "2")
+    void evictsLeastRecentlyUsedDocument() {
+        Wasm wasm = new Wasm("wasm.wasm");
+        try {
+            wasm.init();
+            WasmDocument a = wasm.document(Paths.get("A.cs"), "class A {}");
+            WasmDocument b = wasm.document(Paths.get("B.cs"), "class B {}");
+            wasm.document(Paths.get("A.cs"), "class A {}");
+            wasm.document(Paths.get("C.cs"), "class C {}");
+
+            assertThat(a.isClosed()).isFalse();
+            assertThat(b.isClosed()).isTrue();
+            assertThat(wasm.hasDocument(Paths.get("B.cs"))).isFalse();
+        } finally {
+            wasm.close();
+        }
+    }
+}
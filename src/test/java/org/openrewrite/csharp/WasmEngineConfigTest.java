@@ -0,0 +1,70 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import org.junit.jupiter.api.Test;
+import org.junitpioneer.jupiter.SetSystemProperty;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WasmEngineConfigTest {
+
+    @Test
+    void parsesSettings() {
+        WasmEngineConfig config = WasmEngineConfig.parse("optLevel=speed_and_size, memoryReservation=dynamic");
+        assertThat(config).isEqualTo(WasmEngineConfig.builder()
+                .optLevel(WasmEngineConfig.OptLevel.SPEED_AND_SIZE)
+                .memoryReservation(WasmEngineConfig.MemoryReservation.DYNAMIC)
+                .build());
+        assertThat(config.describe()).isEqualTo("epoch-interruption;optLevel=SPEED_AND_SIZE;memoryReservation=DYNAMIC");
+    }
+
+    @Test
+    @SetSystemProperty(key = WasmEngineConfig.PROPERTY_PREFIX + "optLevel", value = "none")
+    @SetSystemProperty(key = WasmEngineConfig.PROPERTY_PREFIX + "memoryReservation", value = "static")
+    void parsedSettingsOverrideSystemProperties() {
+        WasmEngineConfig config = WasmEngineConfig.parse("optLevel=speed");
+        assertThat(config.getOptLevel()).isEqualTo(WasmEngineConfig.OptLevel.SPEED);
+        assertThat(config.getMemoryReservation()).isEqualTo(WasmEngineConfig.MemoryReservation.STATIC);
+        assertThat(config.describe()).isEqualTo("epoch-interruption;optLevel=SPEED;memoryReservation=STATIC");
+    }
+
+    @Test
+    void rejectsUnknownSettings() {
+        assertThatThrownBy(() -> WasmEngineConfig.parse("fuel=true")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsSettingsTheBindingLacks() {
+        assertThatThrownBy(() -> WasmEngineConfig.parse("poolingAllocator=true"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("not supported");
+    }
+
+    @Test
+    void transformsWithTunedEngine() {
+        WasmRuntime runtime = WasmRuntime.forName(WasmtimeRuntime.NAME, "optLevel=none, memoryReservation=dynamic");
+        assertThat(runtime.getId()).isEqualTo("wasmtime[epoch-interruption;optLevel=NONE;memoryReservation=DYNAMIC]");
+        Wasm wasm = new Wasm(runtime, DemoRecipe.WASM_MODULE, false);
+        try {
+            wasm.init();
+            assertThat(wasm.transform("int i = 42;", DemoRecipe.Transform.IntTypeToLongType.ordinal())).isEqualTo("long i = 42;");
+        } finally {
+            wasm.close();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openrewrite.text.PlainText;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WasmHostTest {
+
+    @Test
+    void guestPullsSourceFromHost() {
+        WasmHostResources resources = new WasmHostResources();
+        resources.putSource(PlainText.builder()
+                .sourcePath(Paths.get("C.cs"))
+                .text("\uFEFFclass C\n{\n    int i = 42;\n}\n")
+                .build());
+        Wasm wasm = new Wasm("wasm.wasm");
+        try {
+            wasm.init();
+            wasm.setHost(resources);
+            int[] transforms = {DemoRecipe.Transform.IntTypeToLongType.ordinal()};
+            assertThat(wasm.transformSource(Paths.get("C.cs"), true, transforms))
+                    .isEqualTo("\uFEFFclass C\n{\n    long i = 42;\n}\n");
+            assertThat(wasm.transformSource(Paths.get("Missing.cs"), false, transforms)).isNull();
+        } finally {
+            wasm.close();
+        }
+    }
+
+    @Test
+    void mapsSourcesWhichWereNotRegistered(@TempDir Path root) throws IOException {
+        Files.write(root.resolve("A.cs"), "class A {}".getBytes(StandardCharsets.UTF_8));
+        WasmHostResources resources = new WasmHostResources(root);
+
+        assertThat(StandardCharsets.UTF_8.decode(resources.resolve("source:A.cs")).toString()).isEqualTo("class A {}");
+        assertThat(resources.resolve("source:B.cs")).isNull();
+        assertThat(resources.resolve("source:../outside.cs")).isNull();
+    }
+
+    @Test
+    void doesNotMapSourcesOutsideRoot(@TempDir Path dir) throws IOException {
+        Path root = Files.createDirectory(dir.resolve("root"));
+        Files.write(dir.resolve("Outside.cs"), "class Outside {}".getBytes(StandardCharsets.UTF_8));
+        Files.createSymbolicLink(root.resolve("Link.cs"), dir.resolve("Outside.cs"));
+        WasmHostResources resources = new WasmHostResources(root.resolve("sub/.."));
+
+        assertThat(resources.resolve("source:../Outside.cs")).isNull();
+        assertThat(resources.resolve("source:Link.cs")).isNull();
+    }
+
+    @Test
+    void servesSourceRegisteredAgain() {
+        WasmHostResources resources = new WasmHostResources();
+        resources.putSource(PlainText.builder().sourcePath(Paths.get("A.cs")).text("class A {}").build());
+        assertThat(StandardCharsets.UTF_8.decode(resources.resolve("source:A.cs")).toString()).isEqualTo("class A {}");
+
+        resources.putSource(PlainText.builder().sourcePath(Paths.get("A.cs")).text("class A { int i; }").build());
+        assertThat(StandardCharsets.UTF_8.decode(resources.resolve("source:A.cs")).toString()).isEqualTo("class A { int i; }");
+    }
+
+    @Test
+    void servesSourcesWithoutByteOrderMark(@TempDir Path root) throws IOException {
+        Files.write(root.resolve("A.cs"), "\uFEFFclass A {}".getBytes(StandardCharsets.UTF_8));
+        WasmHostResources resources = new WasmHostResources(root);
+        resources.putSource(PlainText.builder().sourcePath(Paths.get("B.cs")).text("\uFEFFclass B {}").build());
+
+        assertThat(StandardCharsets.UTF_8.decode(resources.resolve("source:A.cs")).toString()).isEqualTo("class A {}");
+        assertThat(StandardCharsets.UTF_8.decode(resources.resolve("source:B.cs")).toString()).isEqualTo("class B {}");
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WasmInstancePoolTest {
+
+    @Test
+    void recyclesWornOutInstances() {
+        int transform = DemoRecipe.Transform.IntTypeToLongType.ordinal();
+        try (WasmInstancePool pool = new WasmInstancePool(WasmRuntime.forName(null), "wasm.wasm", 1, 1, 0, WasmMetrics.NOOP)) {
+            Wasm first = pool.withInstance(wasm -> {
+                assertThat(wasm.transform("int i = 42;", transform)).isEqualTo("long i = 42;");
+                return wasm;
+            });
+            Wasm second = pool.withInstance(wasm -> {
+                assertThat(wasm.transform("int j = 42;", transform)).isEqualTo("long j = 42;");
+                return wasm;
+            });
+            assertThat(second).isNotSameAs(first);
+        }
+    }
+
+    @Test
+    void transformsAsynchronouslyOnPoolThreads() {
+        int transform = DemoRecipe.Transform.IntTypeToLongType.ordinal();
+        try (WasmInstancePool pool = new WasmInstancePool(WasmRuntime.forName(null), "wasm.wasm", 2, 0, 0, WasmMetrics.NOOP)) {
+            List<CompletableFuture<String>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                String source = "int i" + i + " = 42;";
+                results.add(pool.supplyAsync(() -> {
+                    assertThat(Thread.currentThread().getName()).isEqualTo("rewrite-csharp-wasm-call");
+                    return pool.withInstance(wasm -> wasm.transform(source, transform));
+                }));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertThat(results.get(i).join()).isEqualTo("long i" + i + " = 42;");
+            }
+        }
+    }
+}
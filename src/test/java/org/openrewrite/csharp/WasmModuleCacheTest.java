@@ -0,0 +1,46 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import io.github.kawamuray.wasmtime.Config;
+import io.github.kawamuray.wasmtime.Engine;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WasmModuleCacheTest {
+
+    @TempDir
+    Path cacheDir;
+
+    @Test
+    void configuresWasmtimeCache() throws Exception {
+        Path otherVersion = Files.createDirectories(cacheDir.resolve("wasmtime-java-0.18.0"));
+        Config config = new Config();
+        new WasmModuleCache(cacheDir).configure(config);
+        new Engine(config).close();
+
+        assertThat(cacheDir.resolve("wasmtime-cache.toml")).content()
+                .contains("enabled = true")
+                .contains(cacheDir.toAbsolutePath().toString().replace("\\", "\\\\"));
+        // other JVMs may still use what they put in the directory
+        assertThat(otherVersion).exists();
+    }
+}
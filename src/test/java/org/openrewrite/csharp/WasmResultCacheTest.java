@@ -0,0 +1,68 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WasmResultCacheTest {
+
+    @TempDir
+    Path cacheDir;
+
+    @Test
+    void roundTrip() {
+        WasmResultCache cache = new WasmResultCache(cacheDir, 1024 * 1024);
+        String changed = WasmResultCache.key("abc", new int[]{1}, "int i = 42;");
+        String unchanged = WasmResultCache.key("abc", new int[]{1}, "string s;");
+
+        assertThat(cache.load(changed)).isNull();
+        cache.store(changed, "long i = 42;");
+        cache.store(unchanged, null);
+
+        assertThat(cache.load(changed)).isEqualTo(new WasmResultCache.Hit("long i = 42;"));
+        assertThat(cache.load(unchanged)).isEqualTo(new WasmResultCache.Hit(null));
+    }
+
+    @Test
+    void keyCoversModuleTransformsAndText() {
+        String key = WasmResultCache.key("abc", new int[]{1, 2}, "int i;");
+        assertThat(WasmResultCache.key("abd", new int[]{1, 2}, "int i;")).isNotEqualTo(key);
+        assertThat(WasmResultCache.key("abc", new int[]{2, 1}, "int i;")).isNotEqualTo(key);
+        assertThat(WasmResultCache.key("abc", new int[]{1, 2}, "int j;")).isNotEqualTo(key);
+        assertThat(WasmResultCache.key("abc", new int[]{1, 2}, "int i;")).isEqualTo(key);
+    }
+
+    @Test
+    void evictsWhenFull() {
+        WasmResultCache cache = new WasmResultCache(cacheDir, 10 * 1024);
+        String text = "x".repeat(1023);
+        for (int i = 0; i < 50; i++) {
+            cache.store(WasmResultCache.key("abc", new int[]{i}, text), text);
+        }
+        int cached = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.load(WasmResultCache.key("abc", new int[]{i}, text)) != null) {
+                cached++;
+            }
+        }
+        assertThat(cached).isBetween(1, 10);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.DataTable;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WasmScopeTest {
+
+    @Test
+    void scopePerRun() {
+        ExecutionContext ctx = new InMemoryExecutionContext();
+        WasmScope scope = WasmScope.current(ctx);
+        WasmInstancePool pool = scope.pool(WasmRuntime.forName(null), DemoRecipe.WASM_MODULE);
+        assertThat(WasmScope.current(ctx)).isSameAs(scope);
+        assertThat(scope.pool(WasmRuntime.forName(null), DemoRecipe.WASM_MODULE)).isSameAs(pool);
+
+        WasmScope.close(ctx);
+        assertThatThrownBy(pool::checkout).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> scope.pool(WasmRuntime.forName(null), DemoRecipe.WASM_MODULE))
+          .isInstanceOf(IllegalStateException.class);
+        assertThat(WasmScope.current(ctx)).isNotSameAs(scope);
+    }
+
+    @Test
+    void closedOnceEveryRecipeCompleted() {
+        ExecutionContext ctx = new InMemoryExecutionContext();
+        DemoRecipe first = new DemoRecipe(DemoRecipe.Transform.IntTypeToLongType);
+        DemoRecipe second = new DemoRecipe(DemoRecipe.Transform.TrueToFalse);
+        WasmScope scope = WasmScope.current(ctx);
+        WasmInstancePool pool = scope.pool(WasmRuntime.forName(null), DemoRecipe.WASM_MODULE);
+        pool.withInstance(scope.metrics(first.getCallMetrics()), null, wasm -> wasm.transform("int i = 42;", 0));
+        pool.withInstance(scope.metrics(second.getCallMetrics()), null, wasm -> wasm.transform("bool b = true;", 0));
+
+        WasmScope.complete(ctx, first.getCallMetrics());
+        assertThat(WasmScope.current(ctx)).isSameAs(scope);
+        assertThat(rows(ctx, first.getCallMetrics())).isNotEmpty();
+
+        WasmScope.complete(ctx, second.getCallMetrics());
+        assertThat(WasmScope.current(ctx)).isNotSameAs(scope);
+        assertThat(rows(ctx, second.getCallMetrics())).isNotEmpty();
+    }
+
+    private static List<?> rows(ExecutionContext ctx, DataTable<?> table) {
+        Map<DataTable<?>, List<?>> tables = ctx.getMessage(ExecutionContext.DATA_TABLES, emptyMap());
+        return tables.getOrDefault(table, emptyList());
+    }
+}
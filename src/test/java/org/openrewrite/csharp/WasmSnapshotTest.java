@@ -0,0 +1,59 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp;
+
+import org.junit.jupiter.api.Test;
+import org.junitpioneer.jupiter.SetSystemProperty;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WasmSnapshotTest {
+
+    @Test
+    @SetSystemProperty(key = WasmSnapshot.SNAPSHOT_PROPERTY, value = "true")
+    void restoredInstanceMatchesFreshInstance() {
+        String source = "class C\n{\n    int i = 42;\n    string s = \"int\";\n}\n";
+        int[] transforms = {DemoRecipe.Transform.IntTypeToLongType.ordinal(), DemoRecipe.Transform.ClassDeclToStructDecl.ordinal()};
+
+        Wasm fresh = new Wasm(WasmRuntime.forName(null), "wasm.wasm", false);
+        Wasm restored = new Wasm(WasmRuntime.forName(null), "wasm.wasm", true);
+        try {
+            fresh.init();
+            restored.init();
+            String expected = fresh.transform(source, transforms);
+            assertThat(expected).contains("long i", "struct C");
+            assertThat(restored.transform(source, transforms)).isEqualTo(expected);
+            // the restored heap buffer remains usable across calls
+            assertThat(restored.transform(source, transforms)).isEqualTo(expected);
+        } finally {
+            fresh.close();
+            restored.close();
+        }
+    }
+
+    @Test
+    void exportedMutableGlobals() {
+        byte[] module = {
+          0x00, 0x61, 0x73, 0x6D, 0x01, 0x00, 0x00, 0x00,
+          // a mutable i32 global initialized to 42, and an immutable i64 global
+          0x06, 0x0B, 0x02, 0x7F, 0x01, 0x41, 0x2A, 0x0B, 0x7E, 0x00, 0x42, 0x00, 0x0B,
+          // both exported, as "sp" and "k"
+          0x07, 0x0A, 0x02, 0x02, 0x73, 0x70, 0x03, 0x00, 0x01, 0x6B, 0x03, 0x01
+        };
+        assertThat(WasmModules.exportedMutableGlobals(module))
+          .containsExactly(new WasmModules.ExportedGlobal("sp", 0, WasmModules.ExportedGlobal.I32));
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KeywordMatcherTest {
+
+    @Test
+    void findsAnyKeyword() {
+        KeywordMatcher matcher = KeywordMatcher.of(List.of("checked", "unchecked", "++"));
+        assertThat(matcher.containsAny("x = unchecked(x + 1);")).isTrue();
+        assertThat(matcher.containsAny("checked { }")).isTrue();
+        assertThat(matcher.containsAny("i++;")).isTrue();
+        assertThat(matcher.containsAny("i += 1;")).isFalse();
+    }
+
+    @Test
+    void overlappingKeywords() {
+        KeywordMatcher matcher = KeywordMatcher.of(List.of("ascending", "scene"));
+        assertThat(matcher.containsAny("ascendinscene")).isTrue();
+        assertThat(matcher.containsAny("ascendin scen")).isFalse();
+    }
+
+    @Test
+    void nonAsciiText() {
+        KeywordMatcher matcher = KeywordMatcher.of(List.of("int"));
+        assertThat(matcher.containsAny("// 日本語 int")).isTrue();
+        assertThat(matcher.containsAny("i日nt")).isFalse();
+    }
+
+    @Test
+    void noKeywords() {
+        assertThat(KeywordMatcher.of(List.of()).containsAny("anything")).isFalse();
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2024 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.csharp.internal;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class Utf8Test {
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "int i = 42;", "string s = \"Grüße\";", "// 日本語", "var e = \"😀\";", "\uD800 unpaired"})
+    void encodedLength(String text) {
+        assertThat(Utf8.encodedLength(text, 0)).isEqualTo(text.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"\uFEFFint i = 42;", "\uFEFF"})
+    void encodedLengthSkippingBom(String text) {
+        assertThat(Utf8.startsWithBom(text)).isTrue();
+        assertThat(Utf8.encodedLength(text, 1)).isEqualTo(text.substring(1).getBytes(StandardCharsets.UTF_8).length);
+    }
+}
@@ -0,0 +1,83 @@
+using System;
+using System.Collections.Generic;
+using Microsoft.CodeAnalysis;
+using Microsoft.CodeAnalysis.CSharp;
+using Microsoft.CodeAnalysis.Text;
+
+namespace wasm
+{
+    /// <summary>
+    /// Parsed documents which stay resident between calls, addressed by handles, so that several operations
+    /// on the same source only parse it once.
+    /// </summary>
+    public static class Documents
+    {
+        private static readonly Dictionary<int, SyntaxNode> roots = new Dictionary<int, SyntaxNode>();
+        private static int nextHandle = 1;
+
+        /// <summary>
+        /// Parses the source and keeps its tree until the returned handle is closed.
+        /// </summary>
+        public static int Open(string sourceText)
+        {
+            int handle = nextHandle++;
+            roots[handle] = SyntaxFactory.ParseSyntaxTree(sourceText).GetRoot();
+            return handle;
+        }
+
+        /// <summary>
+        /// Applies the transforms in order to the document's current tree.
+        /// </summary>
+        /// <returns>Whether the transforms replaced any node of the tree</returns>
+        public static bool Apply(int handle, IEnumerable<TransformKind> transformKinds)
+        {
+            SyntaxNode originalRoot = Get(handle);
+            SyntaxNode root = originalRoot;
+            foreach (TransformKind transformKind in transformKinds)
+            {
+                root = new TransformVisitor(root.SyntaxTree, transformKind).Visit(root);
+            }
+            if (ReferenceEquals(root, originalRoot))
+            {
+                return false;
+            }
+            roots[handle] = root;
+            return true;
+        }
+
+        /// <summary>
+        /// Applies text edits to the document and reparses it incrementally, reusing the parts of the current
+        /// tree the edits didn't touch, so that the cost of the reparse is roughly proportional to the size of the edits.
+        /// </summary>
+        public static void Edit(int handle, IEnumerable<TextChange> changes)
+        {
+            SyntaxTree tree = Get(handle).SyntaxTree;
+            SourceText changedText = tree.GetText().WithChanges(changes);
+            roots[handle] = tree.WithChangedText(changedText).GetRoot();
+        }
+
+        public static string Render(int handle)
+        {
+            return Get(handle).ToFullString();
+        }
+
+        public static bool IsOpen(int handle)
+        {
+            return roots.ContainsKey(handle);
+        }
+
+        public static void Close(int handle)
+        {
+            roots.Remove(handle);
+        }
+
+        private static SyntaxNode Get(int handle)
+        {
+            if (!roots.TryGetValue(handle, out SyntaxNode root))
+            {
+                throw new ArgumentException($"No open document with handle {handle}");
+            }
+            return root;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+using System;
+using System.Runtime.InteropServices;
+using System.Text;
+
+namespace wasm
+{
+    /// <summary>
+    /// Requests data from the host on demand, such as the text of a source file or a slice of it, or sibling files,
+    /// so that the host doesn't need to push everything the guest might need up front.
+    /// </summary>
+    public static unsafe class Host
+    {
+        /// <summary>
+        /// Returned by the host for keys it doesn't have a resource for.
+        /// </summary>
+        private const int NotFound = -1;
+
+        /// <summary>
+        /// Copies as much of the resource as fits into <paramref name="capacity"/> bytes at <paramref name="destination"/>,
+        /// starting at <paramref name="offset"/> into the resource, and returns the length of the resource or <see cref="NotFound"/>.
+        /// </summary>
+        [WasmImportLinkage]
+        [DllImport("rewrite", EntryPoint = "host_read")]
+        private static extern int HostRead(byte* key, int keyLength, int offset, byte* destination, int capacity);
+
+        /// <summary>
+        /// Reads the text of a source file, such as <c>source:src/Program.cs</c>, or null if the host doesn't have it.
+        /// </summary>
+        public static string ReadSource(string path)
+        {
+            return ReadString("source:" + path);
+        }
+
+        /// <summary>
+        /// Reads the whole resource as a UTF-8 string, or null if the host doesn't have it.
+        /// </summary>
+        public static string ReadString(string key)
+        {
+            int length = Length(key);
+            return length == NotFound ? null : ReadString(key, 0, length);
+        }
+
+        /// <summary>
+        /// Reads a slice of the resource's UTF-8 bytes, which the caller must make sure doesn't split a character.
+        /// </summary>
+        public static string ReadString(string key, int offset, int length)
+        {
+            byte[] keyBytes = Encoding.UTF8.GetBytes(key);
+            byte[] bytes = new byte[length];
+            int total;
+            fixed (byte* k = keyBytes)
+            fixed (byte* b = bytes)
+            {
+                total = HostRead(k, keyBytes.Length, offset, b, length);
+            }
+            if (total == NotFound)
+            {
+                return null;
+            }
+            return Encoding.UTF8.GetString(bytes, 0, Math.Max(0, Math.Min(length, total - offset)));
+        }
+
+        /// <returns>The length of the resource's UTF-8 bytes, or <see cref="NotFound"/></returns>
+        public static int Length(string key)
+        {
+            byte[] keyBytes = Encoding.UTF8.GetBytes(key);
+            fixed (byte* k = keyBytes)
+            {
+                return HostRead(k, keyBytes.Length, 0, null, 0);
+            }
+        }
+    }
+}
@@ -1,24 +1,251 @@
 using System;
+using System.Collections.Generic;
 using System.Runtime;
 using System.Runtime.InteropServices;
 using System.Runtime.CompilerServices;
 using System.Text;
+using Microsoft.CodeAnalysis.Text;
 using wasm;
 
 public unsafe class Program
 {
+    /// <summary>
+    /// Size of the header of buffers exchanged with the host: the capacity of the buffer followed by the
+    /// length of its payload, both as 32-bit integers.
+    /// </summary>
+    private const int HeaderSize = 2 * sizeof(int);
+
+    private const int Unchanged = 0;
+    private const int Changed = 1;
+
+    /// <summary>
+    /// Returned by the document entry points in place of a result when the handle isn't open.
+    /// </summary>
+    private const int UnknownDocument = -1;
+
+    /// <summary>
+    /// Transforms a single source file. The input payload is the list of transforms to apply (see <see cref="ReadTransforms"/>)
+    /// followed by the UTF-8 source, which extends to the end of the payload. The output payload is the transformed UTF-8 source.
+    /// Returns <see cref="IntPtr.Zero"/> without touching the buffer if the transforms didn't change the source.
+    /// </summary>
     [UnmanagedCallersOnly(EntryPoint = "transform")]
-    public static IntPtr transform(IntPtr source, int transform)
+    public static IntPtr transform(IntPtr buffer)
+    {
+        byte* payload = (byte*)(buffer + HeaderSize);
+        int payloadLength = Marshal.ReadInt32(buffer, sizeof(int));
+        TransformKind[] transforms = ReadTransforms(payload, out int offset);
+        string sourceText = Encoding.UTF8.GetString(payload + offset, payloadLength - offset);
+        string transformed = Transforms.TransformIfChanged(sourceText, transforms);
+        return transformed == null ? IntPtr.Zero : WriteToMemory(transformed, buffer);
+    }
+
+    /// <summary>
+    /// Transforms a batch of source files in a single call. The input payload is the list of transforms to apply
+    /// (see <see cref="ReadTransforms"/>), then the number of sources followed by every source as a length-prefixed
+    /// UTF-8 string. The output payload is the number of results followed by every result as a status
+    /// (<see cref="Unchanged"/> or <see cref="Changed"/>) and a length-prefixed UTF-8 string, which is empty for
+    /// unchanged sources.
+    /// </summary>
+    [UnmanagedCallersOnly(EntryPoint = "transform_batch")]
+    public static IntPtr transform_batch(IntPtr buffer)
     {
-        string sourceText = Marshal.PtrToStringUTF8(source);
-        string transformed = Transforms.Transform(sourceText, (TransformKind)transform);
-        return WriteToMemory(transformed, source);
+        byte* payload = (byte*)(buffer + HeaderSize);
+        TransformKind[] transforms = ReadTransforms(payload, out int offset);
+        int count = *(int*)(payload + offset);
+        offset += sizeof(int);
+        string[] results = new string[count];
+        int[] resultLengths = new int[count];
+        int length = sizeof(int);
+        for (int i = 0; i < count; i++)
+        {
+            int sourceLength = *(int*)(payload + offset);
+            string sourceText = Encoding.UTF8.GetString(payload + offset + sizeof(int), sourceLength);
+            offset += sizeof(int) + sourceLength;
+
+            results[i] = Transforms.TransformIfChanged(sourceText, transforms);
+            resultLengths[i] = results[i] == null ? 0 : Encoding.UTF8.GetByteCount(results[i]);
+            length += 2 * sizeof(int) + resultLengths[i];
+        }
+
+        buffer = EnsureCapacity(buffer, length);
+        Marshal.WriteInt32(buffer, sizeof(int), length);
+        payload = (byte*)(buffer + HeaderSize);
+        *(int*)payload = count;
+        offset = sizeof(int);
+        for (int i = 0; i < count; i++)
+        {
+            string result = results[i];
+            int resultLength = resultLengths[i];
+            *(int*)(payload + offset) = result == null ? Unchanged : Changed;
+            *(int*)(payload + offset + sizeof(int)) = resultLength;
+            offset += 2 * sizeof(int);
+            if (result != null)
+            {
+                Encoding.UTF8.GetBytes(result, new Span<byte>(payload + offset, resultLength));
+                offset += resultLength;
+            }
+        }
+        return buffer;
     }
 
-    private static IntPtr WriteToMemory(string str, IntPtr destination) {
-        byte[] bytes = Encoding.UTF8.GetBytes(str);
-        Marshal.WriteInt32(destination, bytes.Length);
-        Marshal.Copy(bytes, 0, destination + sizeof(int), bytes.Length);
-        return destination;
+    /// <summary>
+    /// Finds where the transforms would change a single source file, without transforming it. The input payload is the same
+    /// as for <see cref="transform"/>. The output payload is the number of matches followed by the start, end and
+    /// <see cref="TransformKind"/> of every match as 32-bit integers, with positions in UTF-16 code units of the source.
+    /// </summary>
+    [UnmanagedCallersOnly(EntryPoint = "find")]
+    public static IntPtr find(IntPtr buffer)
+    {
+        byte* payload = (byte*)(buffer + HeaderSize);
+        int payloadLength = Marshal.ReadInt32(buffer, sizeof(int));
+        TransformKind[] transforms = ReadTransforms(payload, out int offset);
+        string sourceText = Encoding.UTF8.GetString(payload + offset, payloadLength - offset);
+        List<TransformMatch> matches = Transforms.Find(sourceText, transforms);
+
+        int length = sizeof(int) + matches.Count * 3 * sizeof(int);
+        buffer = EnsureCapacity(buffer, length);
+        Marshal.WriteInt32(buffer, sizeof(int), length);
+        int* output = (int*)(buffer + HeaderSize);
+        *output++ = matches.Count;
+        foreach (TransformMatch match in matches)
+        {
+            *output++ = match.Start;
+            *output++ = match.End;
+            *output++ = (int)match.Kind;
+        }
+        return buffer;
+    }
+
+    /// <summary>
+    /// Like <see cref="transform"/>, but the UTF-8 payload following the transforms is the path of the source,
+    /// whose text the guest requests from the host itself. Returns <see cref="IntPtr.Zero"/> if the transforms
+    /// didn't change the source or the host doesn't have it.
+    /// </summary>
+    [UnmanagedCallersOnly(EntryPoint = "transform_source")]
+    public static IntPtr transform_source(IntPtr buffer)
+    {
+        byte* payload = (byte*)(buffer + HeaderSize);
+        int payloadLength = Marshal.ReadInt32(buffer, sizeof(int));
+        TransformKind[] transforms = ReadTransforms(payload, out int offset);
+        string sourceText = Host.ReadSource(Encoding.UTF8.GetString(payload + offset, payloadLength - offset));
+        string transformed = sourceText == null ? null : Transforms.TransformIfChanged(sourceText, transforms);
+        return transformed == null ? IntPtr.Zero : WriteToMemory(transformed, buffer);
+    }
+
+    /// <summary>
+    /// Parses a source and keeps its tree resident for later calls. The input payload is the UTF-8 source.
+    /// Returns the handle of the document, which must eventually be passed to <see cref="document_close"/>.
+    /// </summary>
+    [UnmanagedCallersOnly(EntryPoint = "document_open")]
+    public static int document_open(IntPtr buffer)
+    {
+        byte* payload = (byte*)(buffer + HeaderSize);
+        int payloadLength = Marshal.ReadInt32(buffer, sizeof(int));
+        return Documents.Open(Encoding.UTF8.GetString(payload, payloadLength));
+    }
+
+    /// <summary>
+    /// Applies the list of transforms in the input payload (see <see cref="ReadTransforms"/>) to an open document.
+    /// Returns <see cref="Changed"/> if the transforms replaced any node of the tree, <see cref="Unchanged"/> if they
+    /// didn't, or <see cref="UnknownDocument"/>.
+    /// </summary>
+    [UnmanagedCallersOnly(EntryPoint = "document_apply")]
+    public static int document_apply(int handle, IntPtr buffer)
+    {
+        if (!Documents.IsOpen(handle))
+        {
+            return UnknownDocument;
+        }
+        TransformKind[] transforms = ReadTransforms((byte*)(buffer + HeaderSize), out _);
+        return Documents.Apply(handle, transforms) ? Changed : Unchanged;
+    }
+
+    /// <summary>
+    /// Edits the text of an open document and reparses it incrementally. The input payload is the number of edits
+    /// followed by every edit as the start and length of the replaced span, in UTF-16 code units of the current text,
+    /// and the replacement as a length-prefixed UTF-8 string. Returns <see cref="Changed"/> or <see cref="UnknownDocument"/>.
+    /// </summary>
+    [UnmanagedCallersOnly(EntryPoint = "document_edit")]
+    public static int document_edit(int handle, IntPtr buffer)
+    {
+        if (!Documents.IsOpen(handle))
+        {
+            return UnknownDocument;
+        }
+        byte* payload = (byte*)(buffer + HeaderSize);
+        int count = *(int*)payload;
+        int offset = sizeof(int);
+        TextChange[] changes = new TextChange[count];
+        for (int i = 0; i < count; i++)
+        {
+            int start = *(int*)(payload + offset);
+            int length = *(int*)(payload + offset + sizeof(int));
+            int replacementLength = *(int*)(payload + offset + 2 * sizeof(int));
+            offset += 3 * sizeof(int);
+            changes[i] = new TextChange(new TextSpan(start, length), Encoding.UTF8.GetString(payload + offset, replacementLength));
+            offset += replacementLength;
+        }
+        Documents.Edit(handle, changes);
+        return Changed;
+    }
+
+    /// <summary>
+    /// Writes the current text of an open document to the buffer as its UTF-8 payload, growing the buffer if necessary.
+    /// Returns <see cref="IntPtr.Zero"/> if the document isn't open.
+    /// </summary>
+    [UnmanagedCallersOnly(EntryPoint = "document_render")]
+    public static IntPtr document_render(int handle, IntPtr buffer)
+    {
+        return Documents.IsOpen(handle) ? WriteToMemory(Documents.Render(handle), buffer) : IntPtr.Zero;
+    }
+
+    [UnmanagedCallersOnly(EntryPoint = "document_close")]
+    public static void document_close(int handle)
+    {
+        Documents.Close(handle);
+    }
+
+    /// <summary>
+    /// Reads the ordered list of transforms at the start of a payload, encoded as their count followed by
+    /// the <see cref="TransformKind"/> of every transform as a 32-bit integer.
+    /// </summary>
+    /// <param name="offset">The offset of the first byte following the transforms</param>
+    private static TransformKind[] ReadTransforms(byte* payload, out int offset)
+    {
+        int count = *(int*)payload;
+        TransformKind[] transforms = new TransformKind[count];
+        for (int i = 0; i < count; i++)
+        {
+            transforms[i] = (TransformKind)(*(int*)(payload + (i + 1) * sizeof(int)));
+        }
+        offset = (count + 1) * sizeof(int);
+        return transforms;
+    }
+
+    private static IntPtr WriteToMemory(string str, IntPtr buffer)
+    {
+        int length = Encoding.UTF8.GetByteCount(str);
+        buffer = EnsureCapacity(buffer, length);
+        Marshal.WriteInt32(buffer, sizeof(int), length);
+        Encoding.UTF8.GetBytes(str, new Span<byte>((byte*)(buffer + HeaderSize), length));
+        return buffer;
+    }
+
+    /// <summary>
+    /// Grows the buffer geometrically if a payload of the given length doesn't fit. A grown buffer replaces the
+    /// original one, which is freed, so callers must continue with the returned buffer.
+    /// </summary>
+    private static IntPtr EnsureCapacity(IntPtr buffer, int length)
+    {
+        int capacity = Marshal.ReadInt32(buffer);
+        if (length > capacity)
+        {
+            int newCapacity = Math.Max(length, capacity > (int.MaxValue - HeaderSize) / 2 ? length : capacity * 2);
+            IntPtr grown = (IntPtr)NativeMemory.Alloc((nuint)(HeaderSize + newCapacity));
+            NativeMemory.Free((void*)buffer);
+            buffer = grown;
+            Marshal.WriteInt32(buffer, newCapacity);
+        }
+        return buffer;
     }
-}
\ No newline at end of file
+}
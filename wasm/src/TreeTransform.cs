@@ -1,7 +1,9 @@
 using System;
+using System.Collections.Generic;
 using Microsoft.CodeAnalysis;
 using Microsoft.CodeAnalysis.CSharp;
 using Microsoft.CodeAnalysis.CSharp.Syntax;
+using Microsoft.CodeAnalysis.Text;
 
 namespace wasm
 {
@@ -35,6 +37,11 @@ namespace wasm
         IntTypeToLongType,
     }
 
+    /// <summary>
+    /// A span of a source which a transform would replace, in UTF-16 code units.
+    /// </summary>
+    public readonly record struct TransformMatch(int Start, int End, TransformKind Kind);
+
     public class Transforms
     {
         /// <summary>
@@ -44,11 +51,79 @@ namespace wasm
         /// <param name="transformKind">The kind of Syntax Transform that needs to be performed on the source</param>
         /// <returns>Transformed source code as a string</returns>
         public static string Transform(string sourceText, TransformKind transformKind)
+        {
+            return Transform(sourceText, new[] { transformKind });
+        }
+
+        /// <summary>
+        /// Performs a sequence of syntax transforms of the source code which is passed in as a string. The source is parsed
+        /// only once and every transform is applied to the result of the previous one.
+        /// </summary>
+        /// <param name="sourceText">Text of the source code which is to be transformed</param>
+        /// <param name="transformKinds">The kinds of Syntax Transforms that need to be performed on the source, in order</param>
+        /// <returns>Transformed source code as a string</returns>
+        public static string Transform(string sourceText, IEnumerable<TransformKind> transformKinds)
+        {
+            return TransformIfChanged(sourceText, transformKinds) ?? sourceText;
+        }
+
+        /// <summary>
+        /// Same as <see cref="Transform(string, IEnumerable{TransformKind})"/>, but returns null when the transforms didn't
+        /// change the source, so that callers don't have to compare (or copy) the result to find out.
+        /// </summary>
+        /// <param name="sourceText">Text of the source code which is to be transformed</param>
+        /// <param name="transformKinds">The kinds of Syntax Transforms that need to be performed on the source, in order</param>
+        /// <returns>Transformed source code as a string, or null if the source is unchanged</returns>
+        public static string TransformIfChanged(string sourceText, IEnumerable<TransformKind> transformKinds)
         {
             SyntaxTree sourceTree = SyntaxFactory.ParseSyntaxTree(sourceText);
-            TransformVisitor visitor = new TransformVisitor(sourceTree, transformKind);
+            SyntaxNode originalRoot = sourceTree.GetRoot();
+            SyntaxNode root = originalRoot;
+            foreach (TransformKind transformKind in transformKinds)
+            {
+                root = new TransformVisitor(sourceTree, transformKind).Visit(root);
+            }
+
+            // Rewriters return the original node when nothing below it changed, so this is the common case
+            if (ReferenceEquals(root, originalRoot))
+            {
+                return null;
+            }
 
-            return visitor.Visit(sourceTree.GetRoot()).ToFullString();
+            // Some transforms rebuild nodes unconditionally, in which case only the text can tell
+            string transformed = root.ToFullString();
+            return string.Equals(transformed, sourceText, StringComparison.Ordinal) ? null : transformed;
+        }
+
+        /// <summary>
+        /// Finds the spans of the source the transforms would replace, without rendering the transformed source. Every
+        /// transform is applied to the original tree on its own, so that all spans refer to the original text.
+        /// </summary>
+        /// <param name="sourceText">Text of the source code which is to be searched</param>
+        /// <param name="transformKinds">The kinds of Syntax Transforms to search for</param>
+        /// <returns>The matches of all transforms, ordered by transform and then by position</returns>
+        public static List<TransformMatch> Find(string sourceText, IEnumerable<TransformKind> transformKinds)
+        {
+            SyntaxTree sourceTree = SyntaxFactory.ParseSyntaxTree(sourceText);
+            SyntaxNode originalRoot = sourceTree.GetRoot();
+            List<TransformMatch> matches = new List<TransformMatch>();
+            foreach (TransformKind transformKind in transformKinds)
+            {
+                SyntaxNode root = new TransformVisitor(sourceTree, transformKind).Visit(originalRoot);
+                if (ReferenceEquals(root, originalRoot))
+                {
+                    continue;
+                }
+                // Text changes are always relative to the old text, and nodes rebuilt without changing their text yield none
+                foreach (TextChange change in root.SyntaxTree.GetChanges(sourceTree))
+                {
+                    // Changes are trimmed to the characters which differ, so widen them to whole tokens
+                    TextSpan first = originalRoot.FindToken(change.Span.Start).Span;
+                    TextSpan last = originalRoot.FindToken(Math.Max(change.Span.Start, change.Span.End - 1)).Span;
+                    matches.Add(new TransformMatch(Math.Min(change.Span.Start, first.Start), Math.Max(change.Span.End, last.End), transformKind));
+                }
+            }
+            return matches;
         }
     }
 }
\ No newline at end of file
@@ -1,3 +1,4 @@
+using Microsoft.CodeAnalysis.Text;
 using Xunit;
 
 namespace wasm.tests
@@ -755,5 +756,105 @@ class Program
 
             Assert.Equal(expected_transform, actual_transform);
         }
+
+        [Fact]
+        public static void ChainedTransformsTest()
+        {
+            string input = @"
+class Program
+{
+    static void Main()
+    {
+        int i = 0;
+        bool b = true;
+    }
+}
+";
+
+            string expected_transform = @"
+struct Program
+{
+    static void Main()
+    {
+        long i = 0;
+        bool b = false;
+    }
+}
+";
+            string actual_transform = Transforms.Transform(input, new[] { TransformKind.IntTypeToLongType, TransformKind.TrueToFalse, TransformKind.ClassDeclToStructDecl });
+
+            Assert.Equal(expected_transform, actual_transform);
+        }
+
+        [Fact]
+        public static void TransformIfChangedReturnsNullWhenUnchangedTest()
+        {
+            string input = @"
+class Program
+{
+    static void Main()
+    {
+        bool b = true;
+    }
+}
+";
+            Assert.Null(Transforms.TransformIfChanged(input, new[] { TransformKind.IntTypeToLongType }));
+            Assert.NotNull(Transforms.TransformIfChanged(input, new[] { TransformKind.TrueToFalse }));
+        }
+
+        [Fact]
+        public static void DocumentKeepsTreeAcrossAppliesTest()
+        {
+            string input = @"
+class Program
+{
+    int i = 0;
+}
+";
+            int handle = Documents.Open(input);
+            Assert.False(Documents.Apply(handle, new[] { TransformKind.TrueToFalse }));
+            Assert.True(Documents.Apply(handle, new[] { TransformKind.IntTypeToLongType }));
+            Assert.True(Documents.Apply(handle, new[] { TransformKind.ClassDeclToStructDecl }));
+            Assert.Equal(input.Replace("int i", "long i").Replace("class", "struct"), Documents.Render(handle));
+
+            Documents.Close(handle);
+            Assert.False(Documents.IsOpen(handle));
+        }
+
+        [Fact]
+        public static void DocumentEditReparsesIncrementallyTest()
+        {
+            string input = @"
+class Program
+{
+    int i = 0;
+}
+";
+            int handle = Documents.Open(input);
+            int start = input.IndexOf("0;");
+            Documents.Edit(handle, new[] { new TextChange(new TextSpan(start, 1), "42") });
+            Assert.Equal(input.Replace("0;", "42;"), Documents.Render(handle));
+            Assert.True(Documents.Apply(handle, new[] { TransformKind.IntTypeToLongType }));
+            Assert.Contains("long i = 42;", Documents.Render(handle));
+            Documents.Close(handle);
+        }
+
+        [Fact]
+        public static void FindReportsSpansOfOriginalTextTest()
+        {
+            string input = @"
+class Program
+{
+    int i = 0;
+    bool b = true;
+}
+";
+            var matches = Transforms.Find(input, new[] { TransformKind.TrueToFalse, TransformKind.DoToWhile, TransformKind.IntTypeToLongType });
+            Assert.Equal(2, matches.Count);
+            Assert.Equal(TransformKind.TrueToFalse, matches[0].Kind);
+            Assert.Contains("true", input.Substring(matches[0].Start, matches[0].End - matches[0].Start));
+            Assert.Equal(TransformKind.IntTypeToLongType, matches[1].Kind);
+            Assert.Contains("int", input.Substring(matches[1].Start, matches[1].End - matches[1].Start));
+        }
     }
 }
\ No newline at end of file